@@ -0,0 +1,224 @@
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * Headless batch mode: replays command transcripts at full speed. Every
+ * transcript file is memory-mapped and its lines are fed straight to
+ * Game.processCommand, without prompts. Whenever a game ends (quit or time
+ * out) the next line starts a new one, so one transcript may hold many
+ * games. The transcripts are played in parallel, one per core, all in the
+ * same world.
+ *
+ * The game's messages are thrown away, unless -o is given: then the
+ * messages for "file" are written, buffered, to "file.out".
+ *
+ * Usage: java BatchRunner [-o] transcript...
+ *
+ * @author  Fredrik Ljungdahl
+ * @version 2026.10.18
+ */
+
+public class BatchRunner {
+    private World world;
+    private boolean keepOutput;
+
+    /**
+     * Create a batch runner.
+     * @param world      The world all transcripts are played in.
+     * @param keepOutput Whether to write the game's messages to a file.
+     */
+    public BatchRunner(World world, boolean keepOutput) {
+        this.world = world;
+        this.keepOutput = keepOutput;
+    }
+
+    public static void main(String[] args) throws Exception {
+        boolean keepOutput = false;
+        ArrayList<String> files = new ArrayList<String>();
+        for (String arg : args) {
+            if (arg.equals("-o")) {
+                keepOutput = true;
+            } else {
+                files.add(arg);
+            }
+        }
+        if (files.isEmpty()) {
+            System.err.println("Usage: java BatchRunner [-o] transcript...");
+            System.exit(2);
+        }
+
+        BatchRunner runner = new BatchRunner(new World(), keepOutput);
+        long start = System.nanoTime();
+        ArrayList<Result> results = runner.runAll(files);
+        long elapsed = System.nanoTime() - start;
+
+        long commands = 0;
+        for (Result result : results) {
+            System.out.println(result);
+            commands += result.commands;
+        }
+        System.out.printf("%d transcripts, %d commands in %.3f s (%.0f commands/s)%n",
+            results.size(), commands, elapsed / 1e9, commands * 1e9 / elapsed);
+    }
+
+    /**
+     * Play a number of transcripts in parallel, one per available core.
+     * @param files The transcript files.
+     * @return The results, in the order of the files.
+     */
+    public ArrayList<Result> runAll(ArrayList<String> files) throws Exception {
+        int threads = Math.min(files.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            ArrayList<Future<Result>> futures = new ArrayList<Future<Result>>();
+            for (final String file : files) {
+                futures.add(pool.submit(new Callable<Result>() {
+                    public Result call() throws IOException {
+                        return run(file);
+                    }
+                }));
+            }
+            ArrayList<Result> results = new ArrayList<Result>();
+            for (Future<Result> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Play one transcript.
+     * @param file The transcript file, one command per line.
+     * @return How the transcript went.
+     */
+    public Result run(String file) throws IOException {
+        OutputStream sink = null;
+        Output out = new NullOutput();
+        if (keepOutput) {
+            sink = new BufferedOutputStream(new FileOutputStream(file + ".out"), 1 << 16);
+            out = new BufferedOutput(sink);
+        }
+        try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + ": transcripts over 2 GB are not supported");
+            }
+            MappedByteBuffer input = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return play(file, input, out);
+        } finally {
+            out.flush();
+            if (sink != null) {
+                sink.close();
+            }
+        }
+    }
+
+    /**
+     * Feed every line of the input to a game.
+     */
+    private Result play(String file, MappedByteBuffer input, Output out) {
+        Result result = new Result(file);
+        Parser parser = new Parser(InputStream.nullInputStream(), out);
+        char[] line = new char[128];
+        long start = System.nanoTime();
+
+        Game game = null;
+        while (input.hasRemaining()) {
+            // decode the next line, plain ASCII is simply widened
+            int length = 0;
+            boolean ascii = true;
+            int lineStart = input.position();
+            while (input.hasRemaining()) {
+                byte b = input.get();
+                if (b == '\n') {
+                    break;
+                }
+                if (b < 0) {
+                    ascii = false;
+                }
+                if (length == line.length) {
+                    line = Arrays.copyOf(line, length * 2);
+                }
+                line[length++] = (char) b;
+            }
+            if (!ascii) {
+                byte[] bytes = new byte[length];
+                input.get(lineStart, bytes);
+                line = new String(bytes, StandardCharsets.UTF_8).toCharArray();
+                length = line.length;
+            }
+            if (length > 0 && line[length - 1] == '\r') {
+                length--;
+            }
+
+            if (game == null) {
+                game = new Game(world, out);
+                game.printWelcome();
+                result.games++;
+            }
+            // count only the commands run: those after one ending the game aren't
+            List<Command> commands = parser.parseAll(line, 0, length);
+            for (int i = 0; i < commands.size(); i++) {
+                result.commands++;
+                if (game.processCommand(commands.get(i))) {
+                    result.lastGame = describe(game);
+                    game = null;
+                    break;
+                }
+            }
+        }
+        if (game != null) {
+            result.lastGame = describe(game);
+        }
+        result.nanos = System.nanoTime() - start;
+        return result;
+    }
+
+    /**
+     * @return A short description of the state a game is in.
+     */
+    private static String describe(Game game) {
+        return game.getCurrentRoom().getShortDescription() + ", "
+            + game.getTimeLeft() + "s left, " + game.getKeyCount() + " key(s)";
+    }
+
+    /**
+     * The outcome of playing one transcript.
+     */
+    public static class Result {
+        private String file;
+        private long commands;
+        private int games;
+        private String lastGame;
+        private long nanos;
+
+        Result(String file) {
+            this.file = file;
+            lastGame = "no game played";
+        }
+
+        public String toString() {
+            return String.format("%s: %d commands, %d game(s), %.0f commands/s; last game: %s",
+                file, commands, games, commands * 1e9 / Math.max(1, nanos), lastGame);
+        }
+    }
+}
@@ -0,0 +1,362 @@
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * Micro benchmarks for the hot paths of the game: reading a line,
+ * tokenizing it, looking up the command and executing it. Every benchmark
+ * is warmed up first and then run for a fixed time; the harness reports
+ * the time per operation, the bytes allocated per operation and the
+ * resulting allocation rate (measured on JVMs that support thread
+ * allocation counters).
+ *
+ * The numbers to go by come from JMH, which runs the same operations in
+ * forked JVMs and can profile the allocations with -prof gc:
+ *
+ *   mvn -B -Pjmh package
+ *   java -jar target/benchmarks.jar -prof gc
+ *
+ * This class also has a quick harness of its own, for when there is no
+ * Maven at hand. Compile everything with "javac *.java" and run:
+ *
+ * Usage: java Benchmark [name-prefix]
+ *
+ * @author  Fredrik Ljungdahl
+ * @version 2026.10.18
+ */
+
+public class Benchmark {
+    private static final long WARMUP_NANOS = 1000000000L;
+    private static final long MEASURE_NANOS = 2000000000L;
+
+    // results are folded in here so the JIT cannot drop the work
+    private static volatile int sink;
+
+    public static void main(String[] args) {
+        String filter = "";
+        if (args.length > 0) {
+            filter = args[0];
+        }
+        for (Map.Entry<String, Supplier<Object>> operation : operations().entrySet()) {
+            run(filter, operation.getKey(), operation.getValue());
+        }
+    }
+
+    /**
+     * Set up the operations to benchmark, by name. Each is a piece of code
+     * whose result is consumed, so the work leading up to it can't be
+     * optimized away. The JMH benchmarks in the jmh directory run the same
+     * operations.
+     * @return The operations, in the order they are reported.
+     */
+    public static Map<String, Supplier<Object>> operations() {
+        LinkedHashMap<String, Supplier<Object>> operations = new LinkedHashMap<String, Supplier<Object>>();
+        final Output discard = new NullOutput();
+        final World world = new World();
+        final Room outside = world.getStartRoom();
+
+        operations.put("room.exitLookup", new Supplier<Object>() {
+            public Object get() {
+                // the lookups Game.goRoom makes for one move
+                Room next = outside.getExit(Direction.EAST);
+                ExitState state = outside.getState(Direction.EAST);
+                Key key = outside.getExitKey(Direction.EAST);
+                int id = outside.getExitId(Direction.EAST);
+                return state == ExitState.OPEN && key == null && id >= 0 ? next : null;
+            }
+        });
+
+        final Parser parser = new Parser(
+            new RepeatingInputStream("go east\ngo west\nmark\nback\nquit now\nhelp me please\n"),
+            discard);
+        operations.put("parser.getCommand", new Supplier<Object>() {
+            public Object get() {
+                return parser.getCommand();
+            }
+        });
+
+        // the same six commands on one line
+        final Parser batchParser = new Parser(
+            new RepeatingInputStream("go east; go west; mark; back; quit now; help me please\n"),
+            discard);
+        operations.put("parser.getCommands", new Supplier<Object>() {
+            public Object get() {
+                return batchParser.getCommands();
+            }
+        });
+
+        final CommandWords commandWords = new CommandWords();
+        operations.put("commandWords.hit", new Supplier<Object>() {
+            public Object get() {
+                return commandWords.getCommandWord("back");
+            }
+        });
+        operations.put("commandWords.miss", new Supplier<Object>() {
+            public Object get() {
+                return commandWords.getCommandWord("dance");
+            }
+        });
+        // words as read from a player, not literals: their hash isn't cached
+        // yet, which is what a HashMap lookup pays for on every command
+        final char[] back = "back".toCharArray();
+        final char[] dance = "dance".toCharArray();
+        operations.put("commandWords.freshHit", new Supplier<Object>() {
+            public Object get() {
+                return commandWords.getCommandWord(new String(back));
+            }
+        });
+        operations.put("commandWords.freshMiss", new Supplier<Object>() {
+            public Object get() {
+                return commandWords.getCommandWord(new String(dance));
+            }
+        });
+        // the HashMap the trie replaced, for comparison
+        final HashMap<String, CommandWord> validCommands = new HashMap<String, CommandWord>();
+        for (CommandWord command : CommandWord.values()) {
+            if (command != CommandWord.UNKNOWN) {
+                validCommands.put(command.toString(), command);
+            }
+        }
+        operations.put("hashMap.freshHit", new Supplier<Object>() {
+            public Object get() {
+                return validCommands.getOrDefault(new String(back), CommandWord.UNKNOWN);
+            }
+        });
+        operations.put("hashMap.freshMiss", new Supplier<Object>() {
+            public Object get() {
+                return validCommands.getOrDefault(new String(dance), CommandWord.UNKNOWN);
+            }
+        });
+        final char[] typed = "go back g dance".toCharArray();
+        operations.put("commandWords.charsHit", new Supplier<Object>() {
+            public Object get() {
+                return commandWords.getCommandWord(typed, 3, 7);
+            }
+        });
+        operations.put("commandWords.charsMiss", new Supplier<Object>() {
+            public Object get() {
+                return commandWords.getCommandWord(typed, 10, 15);
+            }
+        });
+        operations.put("commandWords.abbreviation", new Supplier<Object>() {
+            public Object get() {
+                return commandWords.getCommandWord(typed, 8, 9);
+            }
+        });
+
+        operations.put("room.getLongDescription", new Supplier<Object>() {
+            public Object get() {
+                return outside.getLongDescription();
+            }
+        });
+
+        final Command[] cycle = {
+            new Command(CommandWord.GO, "east"), new Command(CommandWord.MARK, null),
+            new Command(CommandWord.GO, "south"), new Command(CommandWord.TIME, null),
+            new Command(CommandWord.BACK, null), new Command(CommandWord.HELP, null),
+            new Command(CommandWord.GO, "west"), new Command(CommandWord.UNKNOWN, null),
+        };
+        operations.put("game.processCommand", new Supplier<Object>() {
+            private Game game;
+            private int next;
+            public Object get() {
+                // play whole games, starting a new one whenever time runs out
+                if (game == null) {
+                    game = new Game(world, discard);
+                }
+                if (game.processCommand(cycle[next])) {
+                    game = null;
+                }
+                next = (next + 1) % cycle.length;
+                return cycle;
+            }
+        });
+
+        // the same with metrics: the cost of counting every command
+        final Metrics metrics = new Metrics();
+        operations.put("game.processCommandMetrics", new Supplier<Object>() {
+            private Game game;
+            private int next;
+            public Object get() {
+                if (game == null) {
+                    game = new Game(world, discard);
+                    game.setMetrics(metrics);
+                }
+                if (game.processCommand(cycle[next])) {
+                    game = null;
+                }
+                next = (next + 1) % cycle.length;
+                return cycle;
+            }
+        });
+
+        final Pathfinder pathfinder = world.getPathfinder();
+        final Room pub = world.findRooms("pub").get(0);
+        final Room lab = world.findRooms("lab").get(0);
+        final KeyRing noKeys = new KeyRing(world.getKeyCount());
+        operations.put("world.findRooms", new Supplier<Object>() {
+            public Object get() {
+                return world.findRooms("pub");
+            }
+        });
+        operations.put("pathfinder.nextStep", new Supplier<Object>() {
+            public Object get() {
+                return pathfinder.nextStep(lab, pub, noKeys);
+            }
+        });
+        operations.put("pathfinder.route", new Supplier<Object>() {
+            public Object get() {
+                return pathfinder.route(lab, pub, noKeys);
+            }
+        });
+
+        // a player who has marked as many places as they can
+        final Waypoints waypoints = new Waypoints();
+        final String[] names = new String[Waypoints.MAX_WAYPOINTS];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "place" + i;
+            waypoints.put(names[i], i);
+        }
+        operations.put("waypoints.get", new Supplier<Object>() {
+            private int next;
+            public Object get() {
+                next = (next + 1) & (names.length - 1);
+                sink += waypoints.get(names[next]);
+                return waypoints;
+            }
+        });
+
+        // players spread over the world, one in every room
+        final RoomIndex roomIndex = new RoomIndex(world, 2, 64);
+        for (Room room : world.getRooms()) {
+            roomIndex.enter(new Game(world, discard), room);
+        }
+        operations.put("roomIndex.getPlayersNear", new Supplier<Object>() {
+            public Object get() {
+                return roomIndex.getPlayersNear(lab, 2);
+            }
+        });
+
+        final Game game = new Game(world, discard);
+        final Command east = new Command(CommandWord.GO, "east");
+        final Command west = new Command(CommandWord.GO, "west");
+        operations.put("game.goRoom", new Supplier<Object>() {
+            private boolean there;
+            public Object get() {
+                there = !there;
+                game.goRoom(there ? east : west);
+                return game;
+            }
+        });
+
+        // the same with a listener on the bus: the cost publishing adds
+        final Game observed = new Game(world, discard);
+        EventBus events = new EventBus();
+        events.subscribe(new GameEventListener() {
+            public void eventHappened(GameEvent event) {
+                sink += event.getTimeLeft();
+            }
+        });
+        observed.setEventBus(events);
+        operations.put("game.goRoomEvents", new Supplier<Object>() {
+            private boolean there;
+            public Object get() {
+                there = !there;
+                observed.goRoom(there ? east : west);
+                return observed;
+            }
+        });
+        return operations;
+    }
+
+    /**
+     * An input stream that plays the same input over and over, so a Parser
+     * can be benchmarked without running out of lines.
+     */
+    private static class RepeatingInputStream extends InputStream {
+        private byte[] data;
+        private int pos;
+
+        RepeatingInputStream(String input) {
+            data = input.getBytes(StandardCharsets.UTF_8);
+        }
+
+        public int read() {
+            int b = data[pos];
+            pos = (pos + 1) % data.length;
+            return b;
+        }
+
+        public int read(byte[] buffer, int offset, int length) {
+            int count = Math.min(length, data.length - pos);
+            System.arraycopy(data, pos, buffer, offset, count);
+            pos = (pos + count) % data.length;
+            return count;
+        }
+    }
+
+    /**
+     * Run a benchmark if its name matches the filter, and print the result.
+     */
+    private static void run(String filter, String name, Supplier<Object> operation) {
+        if (!name.startsWith(filter)) {
+            return;
+        }
+        loop(operation, WARMUP_NANOS);
+
+        long bytesBefore = allocatedBytes();
+        long start = System.nanoTime();
+        long ops = loop(operation, MEASURE_NANOS);
+        long elapsed = System.nanoTime() - start;
+        long bytes = allocatedBytes() - bytesBefore;
+
+        String allocation = "n/a";
+        if (bytesBefore >= 0) {
+            allocation = String.format("%8.1f B/op %8.1f MB/s",
+                (double) bytes / ops, bytes * 1e9 / elapsed / (1024 * 1024));
+        }
+        System.out.printf("%-26s %9.1f ns/op %12.0f ops/s %s%n",
+            name, (double) elapsed / ops, ops * 1e9 / elapsed, allocation);
+    }
+
+    /**
+     * Run an operation over and over for the given time.
+     * @return The number of times it was run.
+     */
+    private static long loop(Supplier<Object> operation, long nanos) {
+        long ops = 0;
+        int hash = 0;
+        long end = System.nanoTime() + nanos;
+        do {
+            for (int i = 0; i < 1000; i++) {
+                Object result = operation.get();
+                hash += result == null ? 0 : System.identityHashCode(result);
+            }
+            ops += 1000;
+        } while (System.nanoTime() < end);
+        sink = hash;
+        return ops;
+    }
+
+    /**
+     * @return The number of bytes allocated by this thread so far, or -1
+     * if the JVM can't tell.
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+            if (hotspot.isThreadAllocatedMemorySupported()) {
+                return hotspot.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,68 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * An Output that collects messages in memory and writes them to a stream,
+ * encoded as UTF-8, in one go when it is flushed. If a lot of text piles
+ * up without a flush (a long batch run, say) it is written out early, so
+ * the buffer stays small. The stream is written to holding its lock, so
+ * another thread can put a whole message of its own in between.
+ *
+ * @author  Fredrik Ljungdahl
+ * @version 2026.10.18
+ */
+
+public class BufferedOutput implements Output {
+    private static final int FLUSH_THRESHOLD = 8192;
+
+    private OutputStream stream;
+    private StringBuilder buffer;
+
+    /**
+     * Create an output writing to the given stream.
+     * @param stream Where the messages are written to.
+     */
+    public BufferedOutput(OutputStream stream) {
+        this.stream = stream;
+        buffer = new StringBuilder();
+    }
+
+    public void print(String text) {
+        buffer.append(text);
+        if (buffer.length() >= FLUSH_THRESHOLD) {
+            flush();
+        }
+    }
+
+    public void println(String text) {
+        buffer.append(text);
+        println();
+    }
+
+    public void println() {
+        print("\n");
+    }
+
+    public void printDescription(Room room) {
+        println(room.getLongDescription());
+    }
+
+    public void flush() {
+        try {
+            synchronized (stream) {
+                if (buffer.length() > 0) {
+                    stream.write(buffer.toString().getBytes(StandardCharsets.UTF_8));
+                    buffer.setLength(0);
+                }
+                stream.flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
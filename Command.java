@@ -62,5 +62,16 @@ public class Command {
     public boolean hasSecondWord() {
         return (secondWord != null);
     }
+
+    /**
+     * @return The command as the player would type it, so that parsing
+     * the text gives the same command back.
+     */
+    public String toString() {
+        if (secondWord == null) {
+            return commandWord.toString();
+        }
+        return commandWord + " " + secondWord;
+    }
 }
 
@@ -9,7 +9,7 @@ public enum CommandWord
 {
     // A value for each command word along with its
     // corresponding user interface string.
-    GO("go"), QUIT("quit"), HELP("help"), MARK("mark"), BACK("back"), UNKNOWN("?"), TIME("time");
+    GO("go"), QUIT("quit"), HELP("help"), MARK("mark"), BACK("back"), UNKNOWN("?"), TIME("time"), ROUTE("route"), STATS("stats"), WHO("who");
 
     // The command string.
     private String commandString;
@@ -1,5 +1,3 @@
-import java.util.HashMap;
-
 /**
  * This class is part of the "World of Zuul" application. 
  * "World of Zuul" is a very simple, text based adventure game.
@@ -7,31 +5,146 @@ import java.util.HashMap;
  * This class holds an enumeration of all command words known to the game.
  * It is used to recognise commands as they are typed in.
  *
+ * The command words are kept in a small trie over the letters a to z.
+ * Every node of the trie knows which command it stands for: the command it
+ * spells, or else the only command starting with it. That way a command
+ * is found in one step per typed letter, and abbreviations such as "g"
+ * for "go" work as long as they are not ambiguous.
+ *
  * @author  Fredrik Ljungdahl, Michael Kölling and David J. Barnes
  * @version 2013.12.19
  */
 
 public class CommandWords {
-    // map between command name and the associated enum
-    private HashMap<String, CommandWord> validCommands;
+    private static final int ALPHABET = 26;
+
+    // the valid command words, in declaration order
+    private CommandWord[] commandWords;
+    // child of node n for letter c is transitions[n * ALPHABET + c - 'a'];
+    // 0 means there is none (the root, node 0, is nobody's child)
+    private int[] transitions;
+    // the command each node resolves to, null if none or ambiguous
+    private CommandWord[] resolved;
+    // whether each node spells out a whole command word
+    private boolean[] complete;
     
     /**
      * Initializes the commands.
      */
     public CommandWords() {
-        validCommands = new HashMap<String, CommandWord>();
+        int count = 0;
+        int maxNodes = 1;
         for (CommandWord command : CommandWord.values()) {
             if (command != CommandWord.UNKNOWN) {
-                validCommands.put(command.toString(), command);
+                count++;
+                maxNodes += command.toString().length();
+            }
+        }
+        commandWords = new CommandWord[count];
+        transitions = new int[maxNodes * ALPHABET];
+        resolved = new CommandWord[maxNodes];
+        complete = new boolean[maxNodes];
+        int[] words = new int[maxNodes]; // number of commands below each node
+
+        int nodeCount = 1;
+        count = 0;
+        for (CommandWord command : CommandWord.values()) {
+            if (command == CommandWord.UNKNOWN) {
+                continue;
+            }
+            commandWords[count++] = command;
+            String word = command.toString();
+            int node = 0;
+            for (int i = 0; i < word.length(); i++) {
+                int letter = letter(word.charAt(i));
+                if (letter < 0) {
+                    throw new IllegalStateException("Command words must be lower case letters: " + word);
+                }
+                int child = transitions[node * ALPHABET + letter];
+                if (child == 0) {
+                    child = nodeCount++;
+                    transitions[node * ALPHABET + letter] = child;
+                }
+                node = child;
+                words[node]++;
+                if (!complete[node]) {
+                    resolved[node] = words[node] == 1 ? command : null;
+                }
             }
+            complete[node] = true;
+            resolved[node] = command;
+        }
+    }
+
+    /**
+     * @return The index of a letter in the trie's alphabet, or -1 if it
+     * isn't part of it.
+     */
+    private static int letter(char c) {
+        if (c < 'a' || c > 'z') {
+            return -1;
+        }
+        return c - 'a';
+    }
+    
+    /**
+     * Walk the trie one step.
+     * @return The child of node for the given character, or 0 if there is
+     * none.
+     */
+    private int step(int node, char c) {
+        int letter = letter(c);
+        if (letter < 0) {
+            return 0;
         }
+        return transitions[node * ALPHABET + letter];
     }
     
     /**
-     * Finds the CommandWord associated with a command word.
+     * Finds the CommandWord associated with a command word, or with an
+     * unambiguous abbreviation of one.
      */
     public CommandWord getCommandWord(String commandWord) {
-        CommandWord command = validCommands.get(commandWord);
+        if (commandWord == null || commandWord.isEmpty()) {
+            return CommandWord.UNKNOWN;
+        }
+        int node = 0;
+        for (int i = 0; i < commandWord.length(); i++) {
+            node = step(node, commandWord.charAt(i));
+            if (node == 0) {
+                return CommandWord.UNKNOWN;
+            }
+        }
+        return resolve(node);
+    }
+
+    /**
+     * Finds the CommandWord spelled by part of a character array, without
+     * turning it into a string first. Abbreviations work as they do for
+     * getCommandWord(String).
+     * @param chars The characters holding the word.
+     * @param start Where the word starts.
+     * @param end   Where the word ends (exclusive).
+     */
+    public CommandWord getCommandWord(char[] chars, int start, int end) {
+        if (start == end) {
+            return CommandWord.UNKNOWN;
+        }
+        int node = 0;
+        for (int i = start; i < end; i++) {
+            node = step(node, chars[i]);
+            if (node == 0) {
+                return CommandWord.UNKNOWN;
+            }
+        }
+        return resolve(node);
+    }
+
+    /**
+     * @return The command a trie node stands for, UNKNOWN if none.
+     */
+    private CommandWord resolve(int node) {
+        CommandWord command = resolved[node];
         if (command == null) {
             return CommandWord.UNKNOWN;
         }
@@ -43,16 +156,30 @@ public class CommandWords {
      * @return true if it is, false if it isn't.
      */
     public boolean isCommand(String aString) {
-        return validCommands.containsKey(aString);
+        for (CommandWord command : commandWords) {
+            if (command.toString().equals(aString)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
      * Print all valid commands to System.out.
      */
     public void showAll() {
-        for (String command : validCommands.keySet()) {
-            System.out.print(command + "  ");
+        Output out = new BufferedOutput(System.out);
+        showAll(out);
+        out.flush();
+    }
+
+    /**
+     * Print all valid commands to the given output.
+     */
+    public void showAll(Output out) {
+        for (CommandWord command : commandWords) {
+            out.print(command + "  ");
         }
-        System.out.println();
+        out.println();
     }
 }
@@ -0,0 +1,85 @@
+/**
+ * Representations for all the directions an exit can lead in,
+ * along with the word the player types for it.
+ * 
+ * @author  Fredrik Ljungdahl
+ * @version 2026.10.18
+ */
+public enum Direction
+{
+    // A value for each direction along with its
+    // corresponding user interface string.
+    NORTH("north"), EAST("east"), SOUTH("south"), WEST("west"), UP("up"), DOWN("down");
+
+    // values() copies the array on every call, so keep one around.
+    private static final Direction[] DIRECTIONS = values();
+
+    // The direction string.
+    private String directionString;
+    
+    /**
+     * Initialise with the corresponding direction string.
+     * @param directionString The direction string.
+     */
+    Direction(String directionString)
+    {
+        this.directionString = directionString;
+    }
+    
+    /**
+     * Find the direction the player means with a word.
+     * @param word The word typed by the player. May be null.
+     * @return The direction, or null if the word is not a direction.
+     */
+    public static Direction fromString(String word)
+    {
+        if (word == null) {
+            return null;
+        }
+        for (Direction direction : DIRECTIONS) {
+            if (direction.directionString.equals(word)) {
+                return direction;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * @return The number of directions.
+     */
+    public static int count()
+    {
+        return DIRECTIONS.length;
+    }
+    
+    /**
+     * @return The direction with the given ordinal.
+     */
+    public static Direction get(int ordinal)
+    {
+        return DIRECTIONS[ordinal];
+    }
+    
+    /**
+     * @return The direction leading back the way this one came.
+     */
+    public Direction opposite()
+    {
+        switch (this) {
+            case NORTH: return SOUTH;
+            case EAST:  return WEST;
+            case SOUTH: return NORTH;
+            case WEST:  return EAST;
+            case UP:    return DOWN;
+            default:    return UP;
+        }
+    }
+    
+    /**
+     * @return The direction as a string.
+     */
+    public String toString()
+    {
+        return directionString;
+    }
+}
@@ -0,0 +1,252 @@
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * The event bus hands GameEvents from the games that publish them to the
+ * listeners that subscribe to them. Publishing never runs a listener:
+ * every subscription has a bounded queue of its own and a thread that
+ * delivers the queued events, so a slow listener doesn't slow down play.
+ *
+ * The queues are lock-free rings: any number of games may publish at once
+ * without taking a lock, and the subscription's thread takes the events
+ * off without one. When a queue is full the subscription's Overflow says
+ * what to do: DROP the event (and count it), or make the publisher WAIT
+ * until there is room. WAIT is for listeners that must see everything,
+ * such as an audit log; it lets a stuck listener stall the games.
+ *
+ * @author  Fredrik Ljungdahl
+ * @version 2026.10.18
+ */
+
+public class EventBus {
+    private static final int DEFAULT_CAPACITY = 1024;
+    // polls before going to sleep; spinning only helps with a core to spare
+    private static final int SPINS = Runtime.getRuntime().availableProcessors() > 1 ? 1000 : 0;
+
+    /**
+     * What publishing does when a subscription's queue is full.
+     */
+    public enum Overflow {
+        DROP,
+        WAIT
+    }
+
+    private CopyOnWriteArrayList<Subscription> subscriptions;
+
+    /**
+     * Create an event bus without subscribers.
+     */
+    public EventBus() {
+        subscriptions = new CopyOnWriteArrayList<Subscription>();
+    }
+
+    /**
+     * Subscribe a listener, dropping events it can't keep up with.
+     * @param listener The listener.
+     * @return The subscription.
+     */
+    public Subscription subscribe(GameEventListener listener) {
+        return subscribe(listener, DEFAULT_CAPACITY, Overflow.DROP);
+    }
+
+    /**
+     * Subscribe a listener.
+     * @param listener The listener.
+     * @param capacity How many events may wait for it; rounded up to a
+     *                 power of two.
+     * @param overflow What to do with events when that many are waiting.
+     * @return The subscription.
+     */
+    public Subscription subscribe(GameEventListener listener, int capacity, Overflow overflow) {
+        Subscription subscription = new Subscription(this, listener, capacity, overflow);
+        subscriptions.add(subscription);
+        subscription.start();
+        return subscription;
+    }
+
+    /**
+     * @return true if anybody subscribes to the events, so they are worth
+     * creating.
+     */
+    public boolean hasSubscribers() {
+        return !subscriptions.isEmpty();
+    }
+
+    /**
+     * Publish an event to all subscribers. Returns as soon as the event is
+     * queued, unless a WAIT subscriber's queue is full.
+     * @param event The event.
+     */
+    public void publish(GameEvent event) {
+        for (Subscription subscription : subscriptions) {
+            subscription.publish(event);
+        }
+    }
+
+    /**
+     * Cancel all subscriptions and wait until their queued events have
+     * been delivered.
+     */
+    public void close() throws InterruptedException {
+        Subscription[] all = subscriptions.toArray(new Subscription[0]);
+        for (Subscription subscription : all) {
+            subscription.cancel();
+        }
+        for (Subscription subscription : all) {
+            subscription.thread.join();
+        }
+    }
+
+    /**
+     * One listener's subscription: its queue and the thread delivering it.
+     */
+    public static class Subscription {
+        private EventBus bus;
+        private GameEventListener listener;
+        private Overflow overflow;
+        private int mask;
+        private AtomicReferenceArray<GameEvent> events;
+        // sequence number of each slot: equal to the publish position when
+        // the slot is free, one more than it when the slot holds an event
+        private AtomicLongArray sequences;
+        private AtomicLong tail;          // next publish position
+        private long head;                // next position to deliver, own thread only
+        private AtomicLong dropped;
+        private Thread thread;
+        private volatile boolean sleeping;
+        private volatile boolean cancelled;
+
+        Subscription(EventBus bus, GameEventListener listener, int capacity, Overflow overflow) {
+            this.bus = bus;
+            this.listener = listener;
+            this.overflow = overflow;
+            int size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+            mask = size - 1;
+            events = new AtomicReferenceArray<GameEvent>(size);
+            sequences = new AtomicLongArray(size);
+            for (int i = 0; i < size; i++) {
+                sequences.set(i, i);
+            }
+            tail = new AtomicLong();
+            dropped = new AtomicLong();
+            thread = new Thread(new Runnable() {
+                public void run() {
+                    deliver();
+                }
+            }, "event-bus");
+            thread.setDaemon(true);
+        }
+
+        void start() {
+            thread.start();
+        }
+
+        /**
+         * @return The number of events dropped because the queue was full.
+         */
+        public long getDropped() {
+            return dropped.get();
+        }
+
+        /**
+         * Stop the subscription. Events already queued are still
+         * delivered; later ones are not.
+         */
+        public void cancel() {
+            cancelled = true;
+            bus.subscriptions.remove(this);
+            LockSupport.unpark(thread);
+        }
+
+        private void publish(GameEvent event) {
+            while (!offer(event)) {
+                if (overflow == Overflow.DROP || cancelled) {
+                    dropped.incrementAndGet();
+                    return;
+                }
+                LockSupport.unpark(thread);
+                Thread.yield();
+            }
+            if (sleeping) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        /**
+         * Put an event in the queue.
+         * @return false if the queue is full.
+         */
+        private boolean offer(GameEvent event) {
+            while (true) {
+                long position = tail.get();
+                int slot = (int) position & mask;
+                long difference = sequences.get(slot) - position;
+                if (difference < 0) {
+                    return false;
+                }
+                if (difference == 0 && tail.compareAndSet(position, position + 1)) {
+                    events.lazySet(slot, event);
+                    sequences.set(slot, position + 1);
+                    return true;
+                }
+                // another publisher took the slot, try the next one
+            }
+        }
+
+        /**
+         * Take the next event off the queue.
+         * @return The event, or null if the queue is empty.
+         */
+        private GameEvent poll() {
+            int slot = (int) head & mask;
+            if (sequences.get(slot) != head + 1) {
+                return null;
+            }
+            GameEvent event = events.get(slot);
+            events.lazySet(slot, null);
+            sequences.set(slot, head + mask + 1);
+            head++;
+            return event;
+        }
+
+        /**
+         * The subscription's thread: hand the queued events to the
+         * listener, and sleep while there are none. Waking up costs the
+         * publisher a system call, so look for a while before sleeping.
+         */
+        private void deliver() {
+            while (true) {
+                GameEvent event = poll();
+                for (int i = 0; event == null && i < SPINS; i++) {
+                    Thread.onSpinWait();
+                    event = poll();
+                }
+                if (event == null) {
+                    if (cancelled) {
+                        return;
+                    }
+                    sleeping = true;
+                    // look again, a publisher may not have seen us sleeping
+                    event = poll();
+                    if (event == null) {
+                        LockSupport.park(this);
+                        sleeping = false;
+                        continue;
+                    }
+                    sleeping = false;
+                }
+                try {
+                    listener.eventHappened(event);
+                } catch (RuntimeException e) {
+                    System.err.println("Event listener failed: " + e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * This class is part of the "World of Zuul" application. 
+ * "World of Zuul" is a very simple, text based adventure game.  
+ *
+ * An Exit describes one way out of a room: the room it leads to, its
+ * state and, for locked exits, the key that opens it. Every exit also has
+ * an id that is unique in its world, used to keep track of which exits a
+ * player has unlocked (see ExitStates).
+ *
+ * @author  Fredrik Ljungdahl
+ * @version 2026.10.18
+ */
+
+public class Exit {
+    private Room target;
+    private ExitState state;
+    private Key key;
+    private int id;
+
+    /**
+     * Create an exit. Its id is handed out later, by the world.
+     * @param target The room the exit leads to.
+     * @param state  The state of the exit.
+     * @param key    The key that opens the exit. May be null.
+     */
+    public Exit(Room target, ExitState state, Key key) {
+        this.target = target;
+        this.state = state;
+        this.key = key;
+        id = -1;
+    }
+
+    /**
+     * @return The room the exit leads to.
+     */
+    public Room getTarget() {
+        return target;
+    }
+
+    /**
+     * @return The id of the room the exit leads to.
+     */
+    public int getTargetId() {
+        return target.getId();
+    }
+
+    /**
+     * @return The state of the exit.
+     */
+    public ExitState getState() {
+        return state;
+    }
+
+    /**
+     * @return The key that opens the exit, or null if it needs none.
+     */
+    public Key getKey() {
+        return key;
+    }
+
+    /**
+     * @return The world-wide id of the exit.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Set the world-wide id of the exit.
+     */
+    void setId(int id) {
+        this.id = id;
+    }
+}
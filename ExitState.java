@@ -0,0 +1,15 @@
+/**
+ * The states an exit can be in when the world is built.
+ * 
+ * @author  Fredrik Ljungdahl
+ * @version 2026.10.18
+ */
+public enum ExitState
+{
+    // the exit can be taken freely
+    OPEN,
+    // the exit needs a key to be unlocked first
+    LOCKED,
+    // the exit can only be taken from the other side
+    TRAPDOOR
+}
@@ -0,0 +1,93 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * ExitStates holds one player's view of the doors in a world: which of the
+ * exits the player has unlocked. Every exit in a World has a small integer
+ * id, and this class keeps one bit per id. The bits are only allocated the
+ * first time a door is unlocked, so starting a new game costs nothing here.
+ *
+ * @author  Fredrik Ljungdahl
+ * @version 2026.10.18
+ */
+
+public class ExitStates {
+    private int exitCount;
+    private long[] unlocked; // one bit per exit id, null until first unlock
+
+    /**
+     * Create the exit states for a world with the given number of exits.
+     * Initially no exits are unlocked.
+     * @param exitCount The number of exits in the world.
+     */
+    public ExitStates(int exitCount) {
+        this.exitCount = exitCount;
+    }
+
+    /**
+     * @return true if the player has unlocked the exit with the given id.
+     * An id that isn't part of this world is never unlocked.
+     */
+    public boolean isUnlocked(int exitId) {
+        if (unlocked == null || exitId < 0 || exitId >= exitCount) {
+            return false;
+        }
+        return (unlocked[exitId >>> 6] & (1L << exitId)) != 0;
+    }
+
+    /**
+     * @return The id of the first exit the player has unlocked from the
+     * given id on, or -1 if there is none.
+     */
+    public int nextUnlocked(int exitId) {
+        return KeyRing.nextBit(unlocked, exitId, exitCount);
+    }
+
+    /**
+     * Mark the exit with the given id as unlocked.
+     */
+    public void unlock(int exitId) {
+        if (exitId < 0 || exitId >= exitCount) {
+            throw new IllegalArgumentException("No such exit: " + exitId);
+        }
+        if (unlocked == null) {
+            unlocked = new long[(exitCount + 63) >>> 6];
+        }
+        unlocked[exitId >>> 6] |= 1L << exitId;
+    }
+
+    /**
+     * Write the unlocked exits to a stream, for a snapshot of the game.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        int words = unlocked == null ? 0 : unlocked.length;
+        out.writeInt(words);
+        for (int i = 0; i < words; i++) {
+            out.writeLong(unlocked[i]);
+        }
+    }
+
+    /**
+     * Replace the unlocked exits with those read from a stream, as
+     * written by writeTo.
+     */
+    public void readFrom(DataInput in) throws IOException {
+        int words = in.readInt();
+        if (words > (exitCount + 63) >>> 6) {
+            throw new IOException("Snapshot doesn't fit this world");
+        }
+        long[] read = words == 0 ? null : new long[(exitCount + 63) >>> 6];
+        for (int i = 0; i < words; i++) {
+            long word = in.readLong();
+            if (!KeyRing.fits(word, i, exitCount)) {
+                throw new IOException("Snapshot doesn't fit this world");
+            }
+            read[i] = word;
+        }
+        unlocked = read;
+    }
+}
@@ -1,4 +1,10 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  *  This class is the main class of the "World of Zuul" application. 
@@ -9,26 +15,68 @@ import java.util.ArrayList;
  *  To play this game, create an instance of this class and call the "play"
  *  method.
  * 
- *  This main class creates and initialises all the others: it creates all
- *  rooms, creates the parser and starts the game.  It also evaluates and
+ *  This main class creates and initialises all the others: it creates the
+ *  world, creates the parser and starts the game.  It also evaluates and
  *  executes the commands that the parser returns.
+ *
+ *  A Game only holds the state of one player. The world it is played in
+ *  may be shared with other games, see GameServer. In a SharedWorld the
+ *  players also see each other come and go, and share keys and doors.
  * 
  * @author  Fredrik Ljungdahl, Michael Kölling and David J. Barnes
  * @version 2013.12.19
  */
 
 public class Game {
+    static final int START_TIME = 60;  // commands, or seconds in real time
+    private static final int MAX_NOTICES = 5;  // told at once, the rest are counted
+
+    private World world;
     private Parser parser;
     private Timer timer;
-    private ArrayList<Key> keys;
+    private boolean timeUp;        // the player has been told time is up
+    private KeyRing keys;
     private Room currentRoom;
-    private Room beamerRoom;
+    private Waypoints waypoints;   // places marked with "mark"
+    private boolean walkBack;      // "back" walks instead of beaming
+    private ExitStates exitStates; // doors this player has opened
+    private Output out;
+    private Journal journal;       // told about every command, may be null
+    private EventBus events;       // where events are published, may be null
+    private Metrics.Recorder metrics; // counts the commands, may be null
+    private Metrics.Move move;     // how the last "go" turned out
+    private RoomIndex roomIndex;   // where other players find this one, may be null
+    private SharedWorld shared;    // what the players share, null if playing alone
+    private long noticePosition;   // the first notice in this room not read yet
+    private boolean replaying;     // bringing a restored game up to date, see replay
+    private String name;           // what other players call this one
     
     /**
-     * Starts the game
+     * Starts the game, in the default world or in the world loaded from
+     * the file given as argument. With "-c rooms" before the file a binary
+     * world is loaded lazily, keeping that many rooms in memory.
      */
-    public static void main(String[] args) {
-        Game game = new Game();
+    public static void main(String[] args) throws IOException {
+        Game game;
+        int arg = 0;
+        int cachedRooms = 0;
+        if (args.length > 1 && args[0].equals("-c")) {
+            cachedRooms = Integer.parseInt(args[1]);
+            arg = 2;
+        }
+        if (args.length > arg) {
+            World world = cachedRooms > 0 ? WorldLoader.load(Paths.get(args[arg]), cachedRooms)
+                : WorldLoader.load(Paths.get(args[arg]));
+            if (world.getRoomCache() != null) {
+                world.getRoomCache().register();
+            }
+            game = new Game(world, System.in, new BufferedOutput(System.out));
+        } else {
+            game = new Game();
+        }
+        Metrics metrics = new Metrics();
+        metrics.register();
+        game.setMetrics(metrics);
         game.play();
     }
         
@@ -36,48 +84,36 @@ public class Game {
      * Create the game and initialise its internal map.
      */
     public Game() {
-        createRooms();
-        timer = new Timer(60, -1, 5);
-        keys = new ArrayList<Key>();
-        parser = new Parser();
+        this(new World(), System.in, new BufferedOutput(System.out));
     }
 
     /**
-     * Create all the rooms and link their exits together.
+     * Create a game in a (possibly shared) world, talking to the player
+     * through the given input and output.
+     * @param world The world to play in.
+     * @param in    Where the player's commands are read from.
+     * @param out   Where the game's messages are written to.
      */
-    private void createRooms() {
-        Room outside, theater, pub, lab, office, classroom;
-        
-        Key officeKey = new Key("Office");
-      
-        // create the rooms
-        outside = new Room("outside the main entrance of the university");
-        theater = new Room("in a lecture theater", officeKey);
-        pub = new Room("in the campus pub");
-        lab = new Room("in a computing lab");
-        office = new Room("in the computing admin office");
-        classroom = new Room("in a plain classroom");
-        
-        // initialise room exits
-        outside.setExit("east", theater);
-        outside.setExit("south", classroom);
-        outside.setExit("west", pub);
-
-        theater.setExit("west", outside);
-        theater.setExit("south", lab);
-
-        pub.setExit("east", outside);
-
-        classroom.setExit("north", outside);
-        classroom.setExit("east", lab);
-        
-        lab.setExit("north", theater, "trapdoor");
-        lab.setExit("east", office, officeKey);
-        lab.setExit("west", classroom);
-
-        office.setExit("west", lab);
+    public Game(World world, InputStream in, Output out) {
+        this.world = world;
+        this.out = out;
+        currentRoom = world.getStartRoom();
+        timer = new Timer(START_TIME, -1, 5);
+        keys = new KeyRing(world.getKeyCount());
+        waypoints = new Waypoints();
+        exitStates = new ExitStates(world.getExitCount());
+        name = "Somebody";
+        parser = new Parser(in, out);
+    }
 
-        currentRoom = outside;  // start game outside
+    /**
+     * Create a game that doesn't read any input itself, for when the
+     * commands are handed to processCommand directly.
+     * @param world The world to play in.
+     * @param out   Where the game's messages are written to.
+     */
+    public Game(World world, Output out) {
+        this(world, InputStream.nullInputStream(), out);
     }
 
     /**
@@ -91,23 +127,73 @@ public class Game {
                 
         boolean finished = false;
         while (!finished) {
-            Command command = parser.getCommand();
-            finished = processCommand(command);
+            finished = step();
         }
-        System.out.println("Thank you for playing.  Good bye.");
+        stopRealTime();
+        if (timer.hasExpired() && !timeUp) {
+            // the clock ran out while waiting for the player, ending the input
+            out.println();
+            out.println("Time's up - you lost!");
+            publish(GameEvent.Type.TIME_UP, null);
+        } else {
+            out.println("Thank you for playing.  Good bye.");
+        }
+        out.flush();
+    }
+
+    /**
+     * Count the time left down in real time from now on, rather than by
+     * the number of commands. The callbacks run on the wheel's thread, not
+     * the game's, so they mustn't touch the game; either may be null.
+     * @param wheel     The timer wheel shared by the games.
+     * @param onLow     Run when time is getting low.
+     * @param onExpired Run when time has run out.
+     */
+    public void startRealTime(TimerWheel wheel, Runnable onLow, Runnable onExpired) {
+        timer.startRealTime(wheel, onLow, onExpired);
+    }
+
+    /**
+     * Stop counting real time, when the player leaves before time is up.
+     */
+    public void stopRealTime() {
+        timer.stop();
+    }
+
+    /**
+     * Read a line of commands from the player and execute them.
+     * @return true If the command ends the game, false otherwise.
+     */
+    public boolean step() {
+        return processCommands(parser.getCommands());
     }
 
     /**
      * Print out the opening message for the player.
      */
-    private void printWelcome() {
-        System.out.println();
-        System.out.println("Welcome to the World of Zuul!");
-        System.out.println("World of Zuul is a new, incredibly boring adventure game.");
-        System.out.println("Type 'help' if you need help.");
-        System.out.println("You have "+timer+"s to win.");
-        System.out.println();
-        System.out.println(currentRoom.getLongDescription());
+    public void printWelcome() {
+        out.println();
+        out.println("Welcome to the World of Zuul!");
+        out.println("World of Zuul is a new, incredibly boring adventure game.");
+        out.println("Type 'help' if you need help.");
+        out.println("You have "+timer+"s to win.");
+        out.println();
+        out.printDescription(currentRoom);
+    }
+
+    /**
+     * Process the commands of one line in order, stopping at the first
+     * one that ends the game. What they print goes out in one response.
+     * @param commands The commands to be processed.
+     * @return true If a command ends the game, false otherwise.
+     */
+    public boolean processCommands(List<Command> commands) {
+        for (int i = 0; i < commands.size(); i++) {
+            if (processCommand(commands.get(i))) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -115,20 +201,42 @@ public class Game {
      * @param command The command to be processed.
      * @return true If the command ends the game, false otherwise.
      */
-    private boolean processCommand(Command command) {
+    public boolean processCommand(Command command) {
+        if (metrics == null) {
+            return execute(command);
+        }
+        move = null;
+        if (!metrics.start()) {
+            boolean quitGame = execute(command);
+            metrics.record(command.getCommandWord(), move, -1, quitGame);
+            return quitGame;
+        }
+        long start = System.nanoTime();
+        boolean quitGame = execute(command);
+        metrics.record(command.getCommandWord(), move, System.nanoTime() - start, quitGame);
+        return quitGame;
+    }
+
+    /**
+     * Execute a command.
+     * @param command The command to be processed.
+     * @return true If the command ends the game, false otherwise.
+     */
+    private boolean execute(Command command) {
         boolean quitGame = false;
         boolean updateTimer = true;
+        printNotices();
 
         CommandWord commandWord = command.getCommandWord();
 
         switch (commandWord) {
             case UNKNOWN:
-                System.out.println("Huh? I don't understand what you're talking about...");
+                out.println("Huh? I don't understand what you're talking about...");
                 updateTimer = false;
                 return false;
 
             case BACK:
-                gotoWaypoint();
+                gotoWaypoint(command);
                 break;
 
             case GO:
@@ -141,7 +249,7 @@ public class Game {
                 break;
 
             case MARK:
-                setWaypoint(currentRoom);
+                setWaypoint(command);
                 break;
 
             case QUIT:
@@ -150,23 +258,227 @@ public class Game {
                 break;
 
             case TIME:
-                System.out.println("You have "+timer+"s left...");
+                out.println("You have "+timer+"s left...");
+                break;
+
+            case ROUTE:
+                findRoute(command);
+                updateTimer = false; // only a hint, walking there takes the time
+                break;
+
+            case STATS:
+                printStats();
+                updateTimer = false;
+                break;
+
+            case WHO:
+                printPlayersNear();
+                updateTimer = false;
                 break;
 
         }
         if (updateTimer) {
             timer.updateTimer();
-            if (timer.hasExpired()) {
-                System.out.println("Time's up - you lost!");
-                quitGame = true;
-            } else if (timer.isLow()) {
-                System.out.println("Time is running low!");
-                System.out.println("You have "+timer+"s left...");
-            }
+        }
+        // in real time the clock may have run out during any command
+        if (!quitGame && timer.hasExpired()) {
+            out.println("Time's up - you lost!");
+            timeUp = true;
+            quitGame = true;
+            publish(GameEvent.Type.TIME_UP, null);
+        } else if (updateTimer && timer.isLow()) {
+            out.println("Time is running low!");
+            out.println("You have "+timer+"s left...");
+            publish(GameEvent.Type.TIME_LOW, null);
+        }
+        if (journal != null) {
+            journal.record(command, this);
         }
         return quitGame;
     }
 
+    /**
+     * Execute a command without telling the player, the journal, the event
+     * bus, the metrics or the other players about it, to bring a restored
+     * game up to date. In a shared world the keys the player picks up are
+     * still claimed and the doors they unlock still unlocked for everybody;
+     * only the notices are left out.
+     * @param command The command to be processed.
+     * @return true If the command ends the game, false otherwise.
+     */
+    public boolean replay(Command command) {
+        Output playerOut = out;
+        Journal playerJournal = journal;
+        EventBus playerEvents = events;
+        Metrics.Recorder playerMetrics = metrics;
+        out = new NullOutput();
+        journal = null;
+        events = null;
+        metrics = null;
+        replaying = true;
+        try {
+            return processCommand(command);
+        } finally {
+            out = playerOut;
+            journal = playerJournal;
+            events = playerEvents;
+            metrics = playerMetrics;
+            replaying = false;
+            if (shared != null) {
+                noticePosition = shared.getNoticePosition(currentRoom);
+            }
+        }
+    }
+
+    /**
+     * Set the bus the game publishes its events on from now on, or null
+     * for none.
+     */
+    public void setEventBus(EventBus events) {
+        this.events = events;
+    }
+
+    /**
+     * Publish an event, if anybody listens.
+     */
+    private void publish(GameEvent.Type type, Key key) {
+        if (events != null && events.hasSubscribers()) {
+            events.publish(new GameEvent(type, this, currentRoom, key));
+        }
+    }
+
+    /**
+     * Set the metrics the game counts its commands in from now on, or null
+     * for none. What the game counted so far is added to the metrics it
+     * counted in before, so setting null when a session ends loses nothing.
+     */
+    public void setMetrics(Metrics metrics) {
+        if (this.metrics != null) {
+            this.metrics.flush();
+        }
+        this.metrics = metrics == null ? null : metrics.newRecorder();
+    }
+
+    /**
+     * Set the journal that is told about every command processed from now
+     * on, or null for none.
+     */
+    public void setJournal(Journal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Set the index the player is kept in from now on, so other players
+     * can find them, or null for none. Setting null when the player leaves
+     * takes them out of the index, and out of the shared world if they
+     * played in one.
+     */
+    public void setRoomIndex(RoomIndex roomIndex) {
+        if (shared != null) {
+            shared.tell(currentRoom, this, name + " left the game.");
+            shared = null;
+        }
+        if (this.roomIndex != null) {
+            this.roomIndex.leave(this, currentRoom);
+        }
+        this.roomIndex = roomIndex;
+        if (roomIndex != null) {
+            roomIndex.enter(this, currentRoom);
+        }
+    }
+
+    /**
+     * Play together with the other players of a shared world from now on,
+     * or alone again if null. This puts the player in the world's room
+     * index as well, and shares the keys and doors they already have.
+     */
+    public void setSharedWorld(SharedWorld shared) {
+        setRoomIndex(shared == null ? null : shared.getRoomIndex());
+        if (shared != null) {
+            this.shared = shared;
+            int lost = shared.share(keys, exitStates);
+            if (lost > 0) {
+                out.println(lost == 1 ? "Somebody else has one of your keys now."
+                    : "Somebody else has " + lost + " of your keys now.");
+            }
+            noticePosition = shared.getNoticePosition(currentRoom);
+            shared.tell(currentRoom, this, name + " joined the game.");
+        }
+    }
+
+    /**
+     * Set what other players call this one, for example in "Ann came in."
+     */
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Set whether "back" walks to the waypoint along the shortest way the
+     * player can take, one unit of time per room, rather than beaming
+     * there at once.
+     */
+    public void setWalkBack(boolean walkBack) {
+        this.walkBack = walkBack;
+    }
+
+    /**
+     * Write the player's state to a stream: where they are, their
+     * waypoints, the time left, their keys and the doors they unlocked.
+     */
+    public void saveState(DataOutput data) throws IOException {
+        data.writeInt(currentRoom.getId());
+        waypoints.writeTo(data);
+        data.writeBoolean(walkBack);
+        data.writeInt(timer.getTime());
+        keys.writeTo(data);
+        exitStates.writeTo(data);
+    }
+
+    /**
+     * Replace the player's state with one written by saveState.
+     */
+    public void restoreState(DataInput data) throws IOException {
+        try {
+            moveTo(world.getRoom(data.readInt()), null);
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Saved state doesn't fit this world", e);
+        }
+        waypoints.readFrom(data, world.getRooms().size());
+        walkBack = data.readBoolean();
+        timer.setTime(data.readInt());
+        keys.readFrom(data);
+        exitStates.readFrom(data);
+    }
+
+    /**
+     * @return The room the player is in.
+     */
+    public Room getCurrentRoom() {
+        return currentRoom;
+    }
+
+    /**
+     * @return What other players call this one.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The time the player has left.
+     */
+    public int getTimeLeft() {
+        return timer.getTime();
+    }
+
+    /**
+     * @return The number of keys the player has found.
+     */
+    public int getKeyCount() {
+        return keys.size();
+    }
+
     // implementations of user commands:
 
     /**
@@ -175,101 +487,351 @@ public class Game {
      * command words.
      */
     private void printHelp() {
-        System.out.println("You are lost. You are alone. You wander");
-        System.out.println("around at the university.");
-        System.out.println();
-        System.out.println("Your command words are:");
-        parser.showCommands();
+        out.println("You are lost. You are alone. You wander");
+        out.println("around at the university.");
+        out.println();
+        out.println("Your command words are:");
+        parser.showCommands(out);
+        out.println("Give several commands at once by separating them with '"
+            + Parser.SEPARATOR + "'.");
+        out.println("Give the places you mark a name to remember more than one:");
+        out.println("'mark <name>' and 'back <name>'.");
+    }
+
+    /**
+     * Tell the player the shortest way to a room, taking only doors they
+     * have the key for or that are unlocked already.
+     */
+    private void findRoute(Command command) {
+        if(!command.hasSecondWord()) {
+            out.println("Route to where?");
+            return;
+        }
+
+        List<Room> matches = world.findRooms(command.getSecondWord());
+        if (matches.isEmpty()) {
+            out.println("You don't know of any place like that.");
+            return;
+        }
+        if (matches.size() > 1) {
+            out.println("Which one? There is more than one place like that.");
+            return;
+        }
+
+        List<Direction> route = world.getPathfinder().route(currentRoom, matches.get(0), keys,
+            exitStates, shared);
+        if (route == null) {
+            out.println("You can't see a way to get there from here.");
+        } else if (route.isEmpty()) {
+            out.println("You are already there!");
+        } else {
+            StringBuilder directions = new StringBuilder("To get there, go:");
+            for (Direction direction : route) {
+                directions.append(' ').append(direction);
+            }
+            out.println(directions.toString());
+        }
     }
 
     /** 
      * Try to in to one direction. If there is an exit, enter the new
      * room, otherwise print an error message.
      */
-    private void goRoom(Command command) {
+    void goRoom(Command command) {
         if(!command.hasSecondWord()) {
             // if there is no second word, we don't know where to go...
-            System.out.println("Go where?");
+            out.println("Go where?");
+            move = Metrics.Move.NO_DIRECTION;
             return;
         }
 
-        String direction = command.getSecondWord();
+        Direction direction = Direction.fromString(command.getSecondWord());
+        if (direction == null) { // not a direction we know of
+            out.println("There's nothing there!");
+            move = Metrics.Move.NO_DIRECTION;
+            return;
+        }
 
         // Try to leave current room.
         Room nextRoom = currentRoom.getExit(direction);
 
         if (nextRoom == null) { // there's nothing in that direction
-            System.out.println("There's nothing there!");
+            out.println("There's nothing there!");
+            move = Metrics.Move.NO_EXIT;
             return;
         }
-        if (currentRoom.getState(direction) == "locked") { // check if needed key is owned.
-            for (Key key : keys) {
-                if (key.toString().equals(currentRoom.getExitKey(direction))) {
-                    currentRoom.setState(direction, "ok");
-                    System.out.println("You unlocked the door!");
-                    break;
-                }
+        ExitState state = currentRoom.getState(direction);
+        int exitId = currentRoom.getExitId(direction);
+        move = Metrics.Move.MOVED;
+        if (state == ExitState.LOCKED && isUnlocked(exitId)) {
+            state = ExitState.OPEN;
+        }
+        if (state == ExitState.LOCKED) { // check if needed key is owned.
+            if (keys.has(currentRoom.getExitKey(direction))) {
+                unlock(exitId);
+                state = ExitState.OPEN;
+                move = Metrics.Move.UNLOCKED;
+                out.println("You unlocked the door!");
+                publish(GameEvent.Type.DOOR_UNLOCKED, currentRoom.getExitKey(direction));
             }
         }
         
-        switch (currentRoom.getState(direction)) {
-            case "locked":
-                String keyLabel = currentRoom.getExitKey(direction);
-                System.out.println("That door is locked! You can unlock it with a key labeled "+keyLabel+", though.");
+        switch (state) {
+            case LOCKED:
+                Key key = currentRoom.getExitKey(direction);
+                out.println("That door is locked! You can unlock it with a key labeled "+key+", though.");
+                move = Metrics.Move.LOCKED;
                 break;
 
-            case "ok":
-                currentRoom = nextRoom;
+            case OPEN:
+                moveTo(nextRoom, direction);
                 getRoomInfo();
                 break;
 
-            case "trapdoor":
-                System.out.println("That way can only be taken from the other side!");
+            case TRAPDOOR:
+                out.println("That way can only be taken from the other side!");
+                move = Metrics.Move.TRAPDOOR;
                 break;
 
             default:
-                System.out.println("Internal error. Please file a bug report.");
+                out.println("Internal error. Please file a bug report.");
                 break;
 
         }
     }
     
+    /**
+     * Print what the metrics have counted so far.
+     */
+    private void printStats() {
+        if (metrics == null) {
+            out.println("Nobody is keeping statistics.");
+            return;
+        }
+        metrics.flush();
+        out.print(metrics.getMetrics().getReport());
+    }
+
+    /**
+     * Tell the player how many other players are around.
+     */
+    private void printPlayersNear() {
+        if (roomIndex == null) {
+            out.println("You are alone.");
+            return;
+        }
+        // other players move on threads of their own, so count them by
+        // where the index has them, not by asking their games
+        int here = roomIndex.countPlayers(currentRoom) - 1;
+        int near = roomIndex.countPlayersNear(currentRoom, roomIndex.getRadius()) - 1 - here;
+        if (near < 0) {
+            near = 0;   // somebody walked in between the two looks
+        }
+        if (here + near == 0) {
+            out.println("Nobody else is around.");
+            return;
+        }
+        out.println(here + (here == 1 ? " other player is" : " other players are") + " here, "
+            + near + " more within " + roomIndex.getRadius()
+            + (roomIndex.getRadius() == 1 ? " room." : " rooms."));
+    }
+
     /**
      * Retrieves room information.
      */
     private void getRoomInfo() {
-        System.out.println(currentRoom.getLongDescription());
+        out.printDescription(currentRoom);
+        enterRoom();
+    }
+
+    /**
+     * Put the player in another room, keeping the room index up to date
+     * and telling the players in both rooms.
+     * @param room      The room.
+     * @param direction The way the player went, or null if they beamed.
+     */
+    private void moveTo(Room room, Direction direction) {
+        boolean telling = shared != null && !replaying && room.getId() != currentRoom.getId();
+        if (telling) {
+            printNotices();     // what happened here before we left
+            shared.tell(currentRoom, this, direction == null
+                ? name + " vanished." : name + " went " + direction + ".");
+        }
+        if (roomIndex != null) {
+            roomIndex.move(this, currentRoom, room);
+        }
+        if (telling) {
+            noticePosition = shared.getNoticePosition(room);
+            shared.tell(room, this, direction == null
+                ? name + " appeared out of nowhere." : name + " came in.");
+        }
+        currentRoom = room;
+    }
+
+    /**
+     * Print what the other players did in this room since the player last
+     * looked. In a crowded room only the first few things are told.
+     */
+    private void printNotices() {
+        if (shared == null || replaying) {
+            return;
+        }
+        ArrayList<String> notices = new ArrayList<String>();
+        noticePosition = shared.readNotices(currentRoom, noticePosition, this, notices);
+        int shown = Math.min(notices.size(), MAX_NOTICES);
+        for (int i = 0; i < shown; i++) {
+            out.println(notices.get(i));
+        }
+        if (notices.size() > shown) {
+            out.println("... and " + (notices.size() - shown) + " more comings and goings.");
+        }
+    }
+
+    /**
+     * Tell the player who else is in the room, naming only the first few.
+     */
+    private void printPlayersHere() {
+        int count = roomIndex.countPlayers(currentRoom) - 1;
+        if (count <= 0) {
+            return;
+        }
+        List<Game> here = roomIndex.getPlayers(currentRoom, MAX_NOTICES + 1);
+        here.remove(this);
+        int named = Math.min(here.size(), count > MAX_NOTICES ? MAX_NOTICES - 1 : MAX_NOTICES);
+        StringBuilder names = new StringBuilder();
+        for (int i = 0; i < named; i++) {
+            if (i > 0) {
+                names.append(i == count - 1 ? " and " : ", ");
+            }
+            names.append(here.get(i).getName());
+        }
+        if (named < count) {
+            names.append(" and ").append(count - named).append(named == 0 ? " others" : " more");
+        }
+        out.println(names + (count == 1 && named == 1 ? " is here." : " are here."));
+    }
+
+    /**
+     * @return true if the player, or in a shared world anybody, has
+     * unlocked an exit.
+     */
+    private boolean isUnlocked(int exitId) {
+        return exitStates.isUnlocked(exitId) || shared != null && shared.isUnlocked(exitId);
+    }
+
+    /**
+     * Unlock an exit, for everybody in a shared world.
+     */
+    private void unlock(int exitId) {
+        exitStates.unlock(exitId);
+        if (shared != null) {
+            shared.unlock(exitId);
+        }
+    }
+
+    /**
+     * Tell the listeners the player entered the room, and pick up its key.
+     */
+    private void enterRoom() {
+        publish(GameEvent.Type.ROOM_ENTERED, null);
+        if (shared != null && !replaying) {
+            printPlayersHere();
+        }
         if (currentRoom.hasKey()) {
-            for (Key key : keys) {
-                if (key.toString().equals(currentRoom.getKeyInfo())) {
-                    return;
-                }
+            if (keys.has(currentRoom.getKey())) {
+                return;
             }
-            System.out.println("You found a key!");
             Key gotKey = currentRoom.getKey();
-            System.out.println("This key is labeled: " + gotKey);
-            gotKey.claim();
+            if (shared != null && !shared.claim(gotKey)) {
+                out.println("Somebody has taken the key that was here.");
+                return;
+            }
+            out.println("You found a key!");
+            out.println("This key is labeled: " + gotKey);
             keys.add(gotKey);
+            if (shared != null && !replaying) {
+                shared.tell(currentRoom, this, name + " picked up the key labeled " + gotKey + ".");
+            }
+            publish(GameEvent.Type.KEY_FOUND, gotKey);
         }
     }
     
     /**
      * Waypoint (beamer) - allows you to "remember" this place.
-     * This way, you can always go back to the place,
-     * unless you mark a new point.
+     * This way, you can always go back to the place, unless you mark a
+     * new point under the same name. A plain "mark" has no name.
      */
-    private void setWaypoint(Room room) {
-        beamerRoom = currentRoom;
-        System.out.println("You've put this room in your memory.");
-        System.out.println("Now, you can go back to this room whenever you want to with 'back'.");
+    private void setWaypoint(Command command) {
+        String name = command.hasSecondWord() ? command.getSecondWord() : "";
+        if (!waypoints.put(name, currentRoom.getId())) {
+            out.println("You can't remember more than " + Waypoints.MAX_WAYPOINTS + " places.");
+            return;
+        }
+        out.println("You've put this room in your memory.");
+        out.println("Now, you can go back to this room whenever you want to with 'back"
+            + (name.isEmpty() ? "" : " " + name) + "'.");
     }
-    private boolean gotoWaypoint() {
-        if (beamerRoom == null) {
-            System.out.println("You never bothered to remember any place...");
+
+    private boolean gotoWaypoint(Command command) {
+        String name = command.hasSecondWord() ? command.getSecondWord() : "";
+        int waypoint = waypoints.get(name);
+        if (waypoint < 0) {
+            if (name.isEmpty()) {
+                out.println("You never bothered to remember any place...");
+            } else {
+                out.println("You don't remember any place called " + name + "...");
+            }
             return false;
         }
-        currentRoom = beamerRoom;
-        System.out.println("You went back!");
+        Room target = world.getRoom(waypoint);
+        if (walkBack) {
+            return walkTo(target);
+        }
+        moveTo(target, null);
+        out.println("You went back!");
+        getRoomInfo();
+        return true;
+    }
+
+    /**
+     * Walk to a room along the shortest way the player can take. Every
+     * room after the first costs a unit of time (the command itself pays
+     * for the first), and the walk stops where time runs out.
+     * @return true if the player moved.
+     */
+    private boolean walkTo(Room target) {
+        Pathfinder pathfinder = world.getPathfinder();
+        if (currentRoom.getId() == target.getId()) {
+            out.println("You are already there!");
+            return false;
+        }
+        Direction direction = pathfinder.nextStep(currentRoom, target, keys, exitStates, shared);
+        if (direction == null) {
+            out.println("You can't find your way back there.");
+            return false;
+        }
+        out.println("You walk back.");
+        while (true) {
+            if (currentRoom.getState(direction) == ExitState.LOCKED) {
+                int exitId = currentRoom.getExitId(direction);
+                if (!isUnlocked(exitId)) {
+                    unlock(exitId);
+                    out.println("You unlocked the door!");
+                    publish(GameEvent.Type.DOOR_UNLOCKED, currentRoom.getExitKey(direction));
+                }
+            }
+            moveTo(currentRoom.getExit(direction), direction);
+            if (currentRoom.getId() == target.getId()) {
+                break;
+            }
+            out.println("You are " + currentRoom.getShortDescription() + " now.");
+            enterRoom();
+            if (timer.getTime() <= 1) {
+                return true;    // the last unit of time goes to the command
+            }
+            timer.updateTimer();
+            direction = pathfinder.nextStep(currentRoom, target, keys, exitStates, shared);
+        }
         getRoomInfo();
         return true;
     }
@@ -281,7 +843,7 @@ public class Game {
      */
     private boolean quit(Command command) {
         if(command.hasSecondWord()) {
-            System.out.println("Quit what?");
+            out.println("Quit what?");
             return false;
         }
         return true;
@@ -0,0 +1,99 @@
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * Something that happened to a player: they entered a room, found a key,
+ * unlocked a door or are running out of time. A Game publishes these on
+ * its EventBus, if it has one. Events are immutable, so they can be
+ * handed to any number of subscribers on other threads.
+ *
+ * @author  Fredrik Ljungdahl
+ * @version 2026.10.18
+ */
+
+public class GameEvent {
+    /**
+     * The kinds of events.
+     */
+    public enum Type {
+        ROOM_ENTERED,   // the room is the one entered
+        KEY_FOUND,      // the key was found in the room
+        DOOR_UNLOCKED,  // the key unlocked a door leading out of the room
+        TIME_LOW,
+        TIME_UP
+    }
+
+    private Type type;
+    private Game game;
+    private Room room;
+    private Key key;
+    private int timeLeft;
+    private long time;
+
+    /**
+     * Create an event.
+     * @param type The kind of event.
+     * @param game The game it happened in.
+     * @param room The room it happened in.
+     * @param key  The key involved, or null.
+     */
+    public GameEvent(Type type, Game game, Room room, Key key) {
+        this.type = type;
+        this.game = game;
+        this.room = room;
+        this.key = key;
+        timeLeft = game.getTimeLeft();
+        time = System.currentTimeMillis();
+    }
+
+    /**
+     * @return The kind of event.
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return The game the event happened in. Subscribers run on threads
+     * of their own and shouldn't touch the game.
+     */
+    public Game getGame() {
+        return game;
+    }
+
+    /**
+     * @return The room the event happened in.
+     */
+    public Room getRoom() {
+        return room;
+    }
+
+    /**
+     * @return The key found or used, or null.
+     */
+    public Key getKey() {
+        return key;
+    }
+
+    /**
+     * @return The time the player had left when the event happened.
+     */
+    public int getTimeLeft() {
+        return timeLeft;
+    }
+
+    /**
+     * @return When the event happened, in milliseconds since the epoch.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    public String toString() {
+        String text = type + " " + room.getShortDescription();
+        if (key != null) {
+            text += " key " + key;
+        }
+        return text + " time " + timeLeft;
+    }
+}
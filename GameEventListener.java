@@ -0,0 +1,19 @@
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * A GameEventListener subscribes to the events on an EventBus, for example
+ * to log them, count them for statistics or push them to other players.
+ *
+ * @author  Fredrik Ljungdahl
+ * @version 2026.10.18
+ */
+
+public interface GameEventListener {
+    /**
+     * Called for every event published while subscribed, in the order
+     * they were published, on the subscription's own thread.
+     * @param event The event.
+     */
+    void eventHappened(GameEvent event);
+}
@@ -0,0 +1,250 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * The game server hosts many independent game sessions in one process.
+ * All sessions share one World; each session is a Game of its own and
+ * runs on its own thread. When the JVM supports virtual threads (Java 21
+ * and later) every session gets a virtual thread, so thousands of mostly
+ * idle players are cheap. On older JVMs a cached pool of platform threads
+ * is used instead.
+ *
+ * Given a TimerWheel, the server plays in real time: every player's clock
+ * runs down by the second whether they type or not. All sessions share the
+ * one wheel, so an idle session costs two pending timeouts and no thread
+ * of its own is woken until its time is up.
+ *
+ * Given a SessionStore, sessions started with an id are kept on disk: a
+ * player coming back with the same id carries on where they left off.
+ *
+ * @author  Fredrik Ljungdahl
+ * @version 2026.10.18
+ */
+
+public class GameServer {
+    private static final byte[] TIME_LOW =
+        "\nTime is running low!\n> ".getBytes(StandardCharsets.UTF_8);
+
+    private World world;
+    private ExecutorService sessions;
+    private TimerWheel wheel;      // null unless playing in real time
+    private EventBus events;       // null if nobody listens
+    private Metrics metrics;       // null if nobody counts
+    private RoomIndex roomIndex;   // null if players can't find each other
+    private SharedWorld shared;    // null unless the players play together
+    private SessionStore store;    // null unless sessions are kept on disk
+    private AtomicInteger playerCount; // players so far, to name them
+
+    /**
+     * Create a server for the default world.
+     */
+    public GameServer() {
+        this(new World());
+    }
+
+    /**
+     * Create a server hosting sessions in the given world.
+     * @param world The world shared by all sessions.
+     */
+    public GameServer(World world) {
+        this(world, null);
+    }
+
+    /**
+     * Create a server hosting sessions in the given world, in real time.
+     * @param world The world shared by all sessions.
+     * @param wheel The timer wheel counting down the players' time, or
+     *              null to count their commands instead.
+     */
+    public GameServer(World world, TimerWheel wheel) {
+        this.world = world;
+        this.wheel = wheel;
+        sessions = newSessionExecutor();
+        playerCount = new AtomicInteger();
+    }
+
+    /**
+     * @return An executor starting one virtual thread per task, if the JVM
+     * has them, or else a cached thread pool.
+     */
+    private static ExecutorService newSessionExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Set the bus that sessions started from now on publish their events
+     * on, or null for none.
+     */
+    public void setEventBus(EventBus events) {
+        this.events = events;
+    }
+
+    /**
+     * Set the metrics that sessions started from now on count their
+     * commands in, or null for none.
+     */
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Set the index the players of sessions started from now on are kept
+     * in, so they can find each other, or null for none.
+     */
+    public void setRoomIndex(RoomIndex roomIndex) {
+        this.roomIndex = roomIndex;
+    }
+
+    /**
+     * Set the shared world the players of sessions started from now on
+     * play together in, or null to let them play alone.
+     */
+    public void setSharedWorld(SharedWorld shared) {
+        this.shared = shared;
+    }
+
+    /**
+     * Set the store that sessions started with an id from now on are kept
+     * in, or null to keep them only while they are played.
+     */
+    public void setSessionStore(SessionStore store) {
+        this.store = store;
+    }
+
+    /**
+     * @return The world shared by all sessions.
+     */
+    public World getWorld() {
+        return world;
+    }
+
+    /**
+     * Start a new game session playing over the given streams. The
+     * game's answer to each command is written to the stream in one go.
+     * In real time the player is warned as soon as time gets low, even
+     * while the session waits for them to type, and the input stream is
+     * closed when the player's time runs out, which ends a read the
+     * session is blocked in.
+     * @param in  Where the player's commands are read from.
+     * @param out Where the game's messages are written to.
+     * @return A future that completes when the player leaves the game.
+     */
+    public Future<?> startSession(InputStream in, OutputStream out) {
+        Output output = new BufferedOutput(out);
+        return startSession(new Game(world, in, output), null, in, out, output);
+    }
+
+    /**
+     * Start a game session that is kept in the session store, playing
+     * over the given streams: the player's game is restored if they
+     * played before, see SessionStore.open. Without a store this is a
+     * new game, as with startSession(in, out).
+     * @param sessionId The session's id; letters, digits, - and _ only.
+     * @param in        Where the player's commands are read from.
+     * @param out       Where the game's messages are written to.
+     * @return A future that completes when the player leaves the game.
+     */
+    public Future<?> startSession(String sessionId, InputStream in, OutputStream out)
+            throws IOException {
+        if (store == null) {
+            return startSession(in, out);
+        }
+        Output output = new BufferedOutput(out);
+        return startSession(store.open(sessionId, in, output), sessionId, in, out, output);
+    }
+
+    private Future<?> startSession(final Game game, final String sessionId,
+            final InputStream in, final OutputStream out, final Output output) {
+        final SessionStore store = this.store;
+        game.setEventBus(events);
+        game.setMetrics(metrics);
+        game.setName(sessionId != null ? sessionId : "Player " + playerCount.incrementAndGet());
+        if (shared != null) {
+            game.setSharedWorld(shared);
+        } else {
+            game.setRoomIndex(roomIndex);
+        }
+        if (wheel != null) {
+            game.startRealTime(wheel, new Runnable() {
+                public void run() {
+                    // the session's BufferedOutput writes holding the same lock
+                    try {
+                        synchronized (out) {
+                            out.write(TIME_LOW);
+                            out.flush();
+                        }
+                    } catch (IOException e) {
+                        // the session finds out about a broken connection itself
+                    }
+                }
+            }, new Runnable() {
+                public void run() {
+                    try {
+                        in.close();
+                    } catch (IOException e) {
+                        // the session ends anyway
+                    }
+                }
+            });
+        }
+        return sessions.submit(new Runnable() {
+            public void run() {
+                try {
+                    game.play();
+                } catch (UncheckedIOException e) {
+                    if (game.getTimeLeft() > 0) {
+                        throw e;
+                    }
+                    output.println();
+                    output.println("Time's up - you lost!");
+                    output.flush();
+                } finally {
+                    game.setRoomIndex(null);
+                    game.setMetrics(null);
+                    if (sessionId != null) {
+                        try {
+                            store.end(sessionId);
+                        } catch (IOException e) {
+                            System.err.println("Could not end session " + sessionId + ": " + e);
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Run an arbitrary task on a session thread, for example a scripted
+     * player driving a Game step by step.
+     * @param task The task to run.
+     * @return The future result of the task.
+     */
+    public <T> Future<T> run(Callable<T> task) {
+        return sessions.submit(task);
+    }
+
+    /**
+     * Stop accepting sessions and wait for the running ones to finish.
+     */
+    public void shutdown() throws InterruptedException {
+        sessions.shutdown();
+        sessions.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,19 @@
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * A Journal is told about every command a Game has processed, for example
+ * to write it to a log the game can be restored from later.
+ *
+ * @author  Fredrik Ljungdahl
+ * @version 2026.10.18
+ */
+
+public interface Journal {
+    /**
+     * Called after a game has processed a command.
+     * @param command The command.
+     * @param game    The game, already changed by the command.
+     */
+    void record(Command command, Game game);
+}
@@ -2,26 +2,23 @@
  * Key handler
  */
 public class Key {
-    boolean owned;
     String identifier;
+    int id;
     
     public Key(String identifier) {
-        owned = false;
         this.identifier = identifier;
+        id = -1;
     }
     
     /**
-     * key is owned atm.
+     * the id the world gave this key, -1 if it is in no world yet.
      */
-    public boolean isOwned() {
-        return owned;
+    public int getId() {
+        return id;
     }
     
-    /**
-     * key is obtained, and is now owned.
-     */
-    public void claim() {
-        owned = true;
+    void setId(int id) {
+        this.id = id;
     }
     
     public String toString() {
@@ -0,0 +1,156 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * A KeyRing holds the keys one player has found. Every key in a World has
+ * a small integer id, and the key ring keeps one bit per id, so checking
+ * for a key is a single bit test no matter how many keys the player
+ * carries. The bits are only allocated when the first key is added.
+ *
+ * @author  Fredrik Ljungdahl
+ * @version 2026.10.18
+ */
+
+public class KeyRing {
+    private int keyCount;
+    private long[] owned; // one bit per key id, null until the first key
+    private int size;
+
+    /**
+     * Create an empty key ring for a world with the given number of keys.
+     * @param keyCount The number of keys in the world.
+     */
+    public KeyRing(int keyCount) {
+        this.keyCount = keyCount;
+    }
+
+    /**
+     * @return true if the key is on the ring. A null key is never on it.
+     */
+    public boolean has(Key key) {
+        return key != null && has(key.getId());
+    }
+
+    /**
+     * @return true if the key with the given id is on the ring. An id
+     * that isn't part of this world is never on it.
+     */
+    public boolean has(int keyId) {
+        if (owned == null || keyId < 0 || keyId >= keyCount) {
+            return false;
+        }
+        return (owned[keyId >>> 6] & (1L << keyId)) != 0;
+    }
+
+    /**
+     * @return The id of the first key on the ring from the given id on,
+     * or -1 if there is none.
+     */
+    public int nextKey(int keyId) {
+        return nextBit(owned, keyId, keyCount);
+    }
+
+    /**
+     * Put a key on the ring.
+     */
+    public void add(Key key) {
+        int keyId = key.getId();
+        if (keyId < 0 || keyId >= keyCount) {
+            throw new IllegalArgumentException("Key " + key + " is not part of this world");
+        }
+        if (owned == null) {
+            owned = new long[(keyCount + 63) >>> 6];
+        }
+        if (!has(keyId)) {
+            owned[keyId >>> 6] |= 1L << keyId;
+            size++;
+        }
+    }
+
+    /**
+     * Take the key with the given id off the ring, if it is on it.
+     */
+    public void remove(int keyId) {
+        if (has(keyId)) {
+            owned[keyId >>> 6] &= ~(1L << keyId);
+            size--;
+        }
+    }
+
+    /**
+     * @return The number of keys on the ring.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Write the keys on the ring to a stream, for a snapshot of the game.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        int words = owned == null ? 0 : owned.length;
+        out.writeInt(words);
+        for (int i = 0; i < words; i++) {
+            out.writeLong(owned[i]);
+        }
+    }
+
+    /**
+     * Replace the keys on the ring with those read from a stream, as
+     * written by writeTo.
+     */
+    public void readFrom(DataInput in) throws IOException {
+        int words = in.readInt();
+        if (words > (keyCount + 63) >>> 6) {
+            throw new IOException("Snapshot doesn't fit this world");
+        }
+        long[] read = words == 0 ? null : new long[(keyCount + 63) >>> 6];
+        int count = 0;
+        for (int i = 0; i < words; i++) {
+            long word = in.readLong();
+            if (!fits(word, i, keyCount)) {
+                throw new IOException("Snapshot doesn't fit this world");
+            }
+            read[i] = word;
+            count += Long.bitCount(word);
+        }
+        owned = read;
+        size = count;
+    }
+
+    /**
+     * @return true if no bit of the given word of a bit set is at or
+     * above the limit.
+     */
+    static boolean fits(long word, int index, int limit) {
+        int bits = limit - (index << 6);
+        return bits >= 64 || (word & (-1L << bits)) == 0;
+    }
+
+    /**
+     * @return The index of the first bit set from the given index on,
+     * below the limit, or -1 if there is none.
+     */
+    static int nextBit(long[] bits, int from, int limit) {
+        if (bits == null || from < 0) {
+            return -1;
+        }
+        int word = from >>> 6;
+        if (word >= bits.length) {
+            return -1;
+        }
+        long rest = bits[word] & (-1L << from);
+        while (rest == 0) {
+            if (++word == bits.length) {
+                return -1;
+            }
+            rest = bits[word];
+        }
+        int index = (word << 6) + Long.numberOfTrailingZeros(rest);
+        return index < limit ? index : -1;
+    }
+}
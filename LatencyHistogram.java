@@ -0,0 +1,120 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * A latency histogram in the style of HdrHistogram: values are counted in
+ * buckets that get wider as the values get larger, so that every value is
+ * kept to within about 6% (16 buckets for every power of two) in a fixed,
+ * small table. Recording a value is one array increment, and any number of
+ * threads may record at once.
+ *
+ * @author  Fredrik Ljungdahl
+ * @version 2026.10.18
+ */
+
+public class LatencyHistogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int MAX_EXPONENT = 40;   // values up to 2^41 ns, half an hour
+
+    private AtomicLongArray counts;
+    private AtomicLong max;
+
+    /**
+     * Create an empty histogram.
+     */
+    public LatencyHistogram() {
+        counts = new AtomicLongArray(bucket(Long.MAX_VALUE) + 1);
+        max = new AtomicLong();
+    }
+
+    /**
+     * Count a value.
+     * @param nanos The value, in nanoseconds.
+     */
+    public void record(long nanos) {
+        counts.getAndIncrement(bucket(nanos));
+        long seen = max.get();
+        while (nanos > seen && !max.compareAndSet(seen, nanos)) {
+            seen = max.get();
+        }
+    }
+
+    /**
+     * @return The number of values counted.
+     */
+    public long getCount() {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * @return The largest value counted, 0 if there are none.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @param fraction Between 0 and 1, 0.99 for the 99th percentile.
+     * @return The value that the given fraction of the values are at or
+     * below, rounded up to its bucket's upper end; 0 if there are none.
+     */
+    public long getPercentile(double fraction) {
+        long total = getCount();
+        if (total == 0) {
+            return 0;
+        }
+        long wanted = Math.max(1, (long) Math.ceil(total * fraction));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= wanted) {
+                return Math.min(upperEnd(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Forget all values.
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        max.set(0);
+    }
+
+    /**
+     * @return The bucket a value is counted in. Values below SUB_BUCKETS
+     * have a bucket each; above that every power of two is split into
+     * SUB_BUCKETS buckets.
+     */
+    private static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) Math.max(0, value);
+        }
+        int exponent = Math.min(63 - Long.numberOfLeadingZeros(value), MAX_EXPONENT);
+        int sub = (int) ((Math.min(value, (2L << MAX_EXPONENT) - 1) >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1));
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @return The largest value counted in a bucket.
+     */
+    private static long upperEnd(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        return ((SUB_BUCKETS + sub + 1) << (exponent - SUB_BITS)) - 1;
+    }
+}
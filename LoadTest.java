@@ -0,0 +1,121 @@
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * Load test driver for the GameServer. It starts a number of scripted
+ * sessions at once, lets each of them play through the same transcript
+ * until the game ends, and reports how many sessions per second the server
+ * got through and the latency of single commands.
+ *
+ * Usage: java LoadTest [sessions]
+ *
+ * @author  Fredrik Ljungdahl
+ * @version 2026.10.18
+ */
+
+public class LoadTest {
+    // a walk around the map that touches every kind of command
+    private static final String TRANSCRIPT =
+        "go east\ngo south\ngo east\ngo west\nmark\ngo west\ngo north\n"
+        + "back\ngo north\ntime\nhelp\ngo west\ngo nowhere\ndance\n";
+
+    public static void main(String[] args) throws Exception {
+        int sessionCount = 10000;
+        if (args.length > 0) {
+            sessionCount = Integer.parseInt(args[0]);
+        }
+
+        GameServer server = new GameServer();
+        byte[] script = repeat(TRANSCRIPT, 10).getBytes(StandardCharsets.UTF_8);
+
+        long start = System.nanoTime();
+        ArrayList<Future<long[]>> results = new ArrayList<Future<long[]>>();
+        for (int i = 0; i < sessionCount; i++) {
+            results.add(server.run(new ScriptedSession(server.getWorld(), script)));
+        }
+
+        ArrayList<long[]> latencies = new ArrayList<long[]>();
+        int commandCount = 0;
+        for (Future<long[]> result : results) {
+            long[] sessionLatencies = result.get();
+            latencies.add(sessionLatencies);
+            commandCount += sessionLatencies.length;
+        }
+        long elapsed = System.nanoTime() - start;
+        server.shutdown();
+
+        long[] all = new long[commandCount];
+        int pos = 0;
+        for (long[] sessionLatencies : latencies) {
+            System.arraycopy(sessionLatencies, 0, all, pos, sessionLatencies.length);
+            pos += sessionLatencies.length;
+        }
+        Arrays.sort(all);
+
+        double seconds = elapsed / 1e9;
+        System.out.println("sessions:     " + sessionCount);
+        System.out.println("commands:     " + commandCount);
+        System.out.printf("elapsed:      %.3f s%n", seconds);
+        System.out.printf("sessions/sec: %.0f%n", sessionCount / seconds);
+        System.out.printf("commands/sec: %.0f%n", commandCount / seconds);
+        System.out.println("p50 latency:  " + percentile(all, 0.50) + " ns");
+        System.out.println("p99 latency:  " + percentile(all, 0.99) + " ns");
+        System.out.println("max latency:  " + all[all.length - 1] + " ns");
+    }
+
+    /**
+     * A scripted player. Plays one game from the script and returns the
+     * latency of every command it issued.
+     */
+    private static class ScriptedSession implements Callable<long[]> {
+        private World world;
+        private byte[] script;
+
+        ScriptedSession(World world, byte[] script) {
+            this.world = world;
+            this.script = script;
+        }
+
+        public long[] call() {
+            Game game = new Game(world, new ByteArrayInputStream(script), new NullOutput());
+            long[] latencies = new long[64];
+            int count = 0;
+
+            game.printWelcome();
+            boolean finished = false;
+            while (!finished) {
+                long before = System.nanoTime();
+                finished = game.step();
+                long latency = System.nanoTime() - before;
+                if (count == latencies.length) {
+                    latencies = Arrays.copyOf(latencies, count * 2);
+                }
+                latencies[count++] = latency;
+            }
+            return Arrays.copyOf(latencies, count);
+        }
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, index)];
+    }
+
+    private static String repeat(String s, int times) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            builder.append(s);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,74 @@
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * A Transport for nodes in one process: every node has a thread of its
+ * own, and sending a message queues it for that thread. The messages are
+ * handed over as they are, without copying.
+ *
+ * @author  Fredrik Ljungdahl
+ * @version 2026.10.18
+ */
+
+public class LocalTransport implements Transport {
+    private ConcurrentHashMap<Integer, Mailbox> mailboxes;
+
+    /**
+     * Create a transport without nodes.
+     */
+    public LocalTransport() {
+        mailboxes = new ConcurrentHashMap<Integer, Mailbox>();
+    }
+
+    public void register(final int node, Receiver receiver) {
+        ExecutorService thread = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "node-" + node);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        mailboxes.put(node, new Mailbox(thread, receiver));
+    }
+
+    public void send(int node, final byte[] message) {
+        final Mailbox mailbox = mailboxes.get(node);
+        if (mailbox == null) {
+            throw new IllegalArgumentException("No such node: " + node);
+        }
+        try {
+            mailbox.thread.execute(new Runnable() {
+                public void run() {
+                    mailbox.receiver.receive(message);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // closed
+        }
+    }
+
+    public void close() {
+        for (Mailbox mailbox : mailboxes.values()) {
+            mailbox.thread.shutdown();
+        }
+    }
+
+    /**
+     * A node: its thread and its receiver.
+     */
+    private static class Mailbox {
+        private ExecutorService thread;
+        private Receiver receiver;
+
+        Mailbox(ExecutorService thread, Receiver receiver) {
+            this.thread = thread;
+            this.receiver = receiver;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * Metrics count what the games are doing: how often each command word is
+ * processed and how long it takes, and how each attempt to "go" somewhere
+ * turns out. One Metrics is meant to be shared by all games of a process;
+ * the counters are LongAdders, so games on many threads can count at once
+ * without fighting over a cache line.
+ *
+ * Even an uncontended LongAdder costs an atomic instruction, and reading
+ * the clock costs more. So every game counts in a Recorder of its own, with
+ * plain arithmetic, and only every SAMPLE_INTERVAL-th command is timed;
+ * that is also when the game's counts are added to the shared ones, and
+ * when the game ends. Each recorder starts counting at a random offset,
+ * so short games are sampled as often as long ones rather than never.
+ * Servers flush a game's recorder when its session ends, however it ends,
+ * so no counts are lost. The latency histograms show the distribution of
+ * the timed commands.
+ *
+ * The numbers can be read with the "stats" command, or over JMX once the
+ * metrics are registered.
+ *
+ * @author  Fredrik Ljungdahl
+ * @version 2026.10.18
+ */
+
+public class Metrics implements MetricsMXBean {
+    public static final int SAMPLE_INTERVAL = 64;   // a power of two
+
+    /**
+     * The ways an attempt to go somewhere can turn out.
+     */
+    public enum Move {
+        MOVED,
+        UNLOCKED,       // unlocked a door and went through it
+        LOCKED,
+        TRAPDOOR,
+        NO_EXIT,
+        NO_DIRECTION    // no direction given, or not one we know of
+    }
+
+    private LongAdder[] commandCounts;
+    private LatencyHistogram[] commandLatencies;
+    private LongAdder[] moveCounts;
+    private LatencyHistogram[] moveLatencies;
+
+    /**
+     * Create metrics with all counts at zero.
+     */
+    public Metrics() {
+        int commands = CommandWord.values().length;
+        commandCounts = new LongAdder[commands];
+        commandLatencies = new LatencyHistogram[commands];
+        for (int i = 0; i < commands; i++) {
+            commandCounts[i] = new LongAdder();
+            commandLatencies[i] = new LatencyHistogram();
+        }
+        int moves = Move.values().length;
+        moveCounts = new LongAdder[moves];
+        moveLatencies = new LatencyHistogram[moves];
+        for (int i = 0; i < moves; i++) {
+            moveCounts[i] = new LongAdder();
+            moveLatencies[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Make the metrics readable over JMX, as "zuul:type=Metrics".
+     */
+    public void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                .registerMBean(this, new ObjectName("zuul:type=Metrics"));
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register the metrics", e);
+        }
+    }
+
+    /**
+     * @return A recorder for one game to count its commands with.
+     */
+    public Recorder newRecorder() {
+        return new Recorder();
+    }
+
+    public Map<String, Long> getCommandCounts() {
+        Map<String, Long> counts = new LinkedHashMap<String, Long>();
+        for (CommandWord commandWord : CommandWord.values()) {
+            counts.put(commandWord.toString(), commandCounts[commandWord.ordinal()].sum());
+        }
+        return counts;
+    }
+
+    public Map<String, Long> getMoveCounts() {
+        Map<String, Long> counts = new LinkedHashMap<String, Long>();
+        for (Move move : Move.values()) {
+            counts.put(move.toString(), moveCounts[move.ordinal()].sum());
+        }
+        return counts;
+    }
+
+    public Map<String, Long> getMedianNanos() {
+        return percentiles(0.5);
+    }
+
+    public Map<String, Long> getP99Nanos() {
+        return percentiles(0.99);
+    }
+
+    public Map<String, Long> getMaxNanos() {
+        Map<String, Long> max = new LinkedHashMap<String, Long>();
+        for (CommandWord commandWord : CommandWord.values()) {
+            max.put(commandWord.toString(), commandLatencies[commandWord.ordinal()].getMax());
+        }
+        return max;
+    }
+
+    private Map<String, Long> percentiles(double fraction) {
+        Map<String, Long> values = new LinkedHashMap<String, Long>();
+        for (CommandWord commandWord : CommandWord.values()) {
+            values.put(commandWord.toString(),
+                commandLatencies[commandWord.ordinal()].getPercentile(fraction));
+        }
+        return values;
+    }
+
+    public String getReport() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%-16s %10s %9s %9s %9s %9s\n",
+            "command", "count", "p50 us", "p99 us", "p99.9 us", "max us"));
+        for (CommandWord commandWord : CommandWord.values()) {
+            int i = commandWord.ordinal();
+            appendRow(report, commandWord.toString(), commandCounts[i].sum(), commandLatencies[i]);
+        }
+        for (Move move : Move.values()) {
+            int i = move.ordinal();
+            appendRow(report, "go " + move.toString().toLowerCase().replace('_', ' '), moveCounts[i].sum(),
+                moveLatencies[i]);
+        }
+        report.append("(latencies of every " + SAMPLE_INTERVAL + "th command)\n");
+        return report.toString();
+    }
+
+    private static void appendRow(StringBuilder report, String name, long count,
+                                  LatencyHistogram latencies) {
+        report.append(String.format("%-16s %10d %9.2f %9.2f %9.2f %9.2f\n", name, count,
+            latencies.getPercentile(0.5) / 1000.0, latencies.getPercentile(0.99) / 1000.0,
+            latencies.getPercentile(0.999) / 1000.0, latencies.getMax() / 1000.0));
+    }
+
+    /**
+     * Counts the commands of one game, and adds them to the shared counts
+     * now and then. A recorder is used by one thread at a time.
+     */
+    public class Recorder {
+        private long[] commands;
+        private long[] moves;
+        private int count;       // commands since the game started, plus a random offset
+
+        Recorder() {
+            commands = new long[commandCounts.length];
+            moves = new long[moveCounts.length];
+            count = ThreadLocalRandom.current().nextInt(SAMPLE_INTERVAL);
+        }
+
+        /**
+         * @return The metrics the counts are added to.
+         */
+        public Metrics getMetrics() {
+            return Metrics.this;
+        }
+
+        /**
+         * Start counting a command.
+         * @return true if this command should be timed.
+         */
+        public boolean start() {
+            return (++count & (SAMPLE_INTERVAL - 1)) == 0;
+        }
+
+        /**
+         * Count a processed command.
+         * @param commandWord The command's word.
+         * @param move        How it turned out, for "go"; otherwise null.
+         * @param nanos       How long it took, or -1 if it wasn't timed.
+         * @param last        true if the command ended the game.
+         */
+        public void record(CommandWord commandWord, Move move, long nanos, boolean last) {
+            commands[commandWord.ordinal()]++;
+            if (move != null) {
+                moves[move.ordinal()]++;
+            }
+            if (nanos >= 0) {
+                commandLatencies[commandWord.ordinal()].record(nanos);
+                if (move != null) {
+                    moveLatencies[move.ordinal()].record(nanos);
+                }
+            }
+            if (nanos >= 0 || last) {
+                flush();
+            }
+        }
+
+        /**
+         * Add the counts so far to the shared ones.
+         */
+        public void flush() {
+            for (int i = 0; i < commands.length; i++) {
+                if (commands[i] != 0) {
+                    commandCounts[i].add(commands[i]);
+                    commands[i] = 0;
+                }
+            }
+            for (int i = 0; i < moves.length; i++) {
+                if (moves[i] != 0) {
+                    moveCounts[i].add(moves[i]);
+                    moves[i] = 0;
+                }
+            }
+        }
+    }
+
+    public void reset() {
+        for (int i = 0; i < commandCounts.length; i++) {
+            commandCounts[i].reset();
+            commandLatencies[i].reset();
+        }
+        for (int i = 0; i < moveCounts.length; i++) {
+            moveCounts[i].reset();
+            moveLatencies[i].reset();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+import java.util.Map;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * The management interface of Metrics, as seen in JConsole or any other
+ * JMX client. Latencies are in nanoseconds and keyed by command word.
+ *
+ * @author  Fredrik Ljungdahl
+ * @version 2026.10.18
+ */
+
+public interface MetricsMXBean {
+    /**
+     * @return How often each command was processed.
+     */
+    Map<String, Long> getCommandCounts();
+
+    /**
+     * @return How often each outcome of "go" happened.
+     */
+    Map<String, Long> getMoveCounts();
+
+    /**
+     * @return The median latency of each command.
+     */
+    Map<String, Long> getMedianNanos();
+
+    /**
+     * @return The 99th percentile latency of each command.
+     */
+    Map<String, Long> getP99Nanos();
+
+    /**
+     * @return The largest latency of each command.
+     */
+    Map<String, Long> getMaxNanos();
+
+    /**
+     * @return All of it as a table of text, as the "stats" command shows.
+     */
+    String getReport();
+
+    /**
+     * Start counting from zero.
+     */
+    void reset();
+}
@@ -0,0 +1,27 @@
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * An Output that throws every message away, for benchmarks and batch runs
+ * nobody is watching.
+ *
+ * @author  Fredrik Ljungdahl
+ * @version 2026.10.18
+ */
+
+public class NullOutput implements Output {
+    public void print(String text) {
+    }
+
+    public void println(String text) {
+    }
+
+    public void println() {
+    }
+
+    public void printDescription(Room room) {
+    }
+
+    public void flush() {
+    }
+}
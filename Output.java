@@ -0,0 +1,41 @@
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * An Output is where the game writes its messages to the player. Every
+ * session has its own; messages may be held back until flush is called,
+ * which the Parser does right before it waits for the next command. That
+ * way the whole answer to a command goes out in one write.
+ *
+ * @author  Fredrik Ljungdahl
+ * @version 2026.10.18
+ */
+
+public interface Output {
+    /**
+     * Print some text.
+     */
+    void print(String text);
+
+    /**
+     * Print some text followed by a line break.
+     */
+    void println(String text);
+
+    /**
+     * Print a line break.
+     */
+    void println();
+
+    /**
+     * Print the long description of a room followed by a line break. An
+     * output that writes bytes may write the room's cached bytes as they
+     * are, see Room.getLongDescriptionBytes.
+     */
+    void printDescription(Room room);
+
+    /**
+     * Send everything printed so far on to the player.
+     */
+    void flush();
+}
@@ -1,4 +1,11 @@
-import java.util.Scanner;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * This class is part of the "World of Zuul" application. 
@@ -12,51 +19,270 @@ import java.util.Scanner;
  * The parser has a set of known command words. It checks user input against
  * the known commands, and if the input is not one of the known commands, it
  * returns a command object that is marked as an unknown command.
+ *
+ * A line may hold several commands separated by ';', so a player on a slow
+ * connection can send "go east; go south; mark" in one go. getCommands
+ * returns them all; getCommand returns them one at a time and only reads
+ * (and prompts) again once the line is used up.
+ *
+ * Input lines are read into a reusable character buffer and split into
+ * words right there, so reading a command doesn't create any strings
+ * unless the second word is something the game doesn't already know.
+ * The command words and the commands without a second word never change,
+ * so all parsers share them, and the buffers are only allocated once the
+ * parser reads: a parser that is only handed lines to parse costs next
+ * to nothing.
  * 
  * @author  Fredrik Ljungdahl, Michael Kölling and David J. Barnes
  * @version 2013.12.19
  */
 public class Parser {
+    public static final char SEPARATOR = ';';
+
+    private static final CommandWords COMMAND_WORDS = new CommandWords();
+    private static final Command[] BARE_COMMANDS = bareCommands();
+
     private CommandWords commands;  // holds all valid command words
-    private Scanner reader;         // source of command input
+    private InputStream in;         // source of command input
+    private Reader reader;          // reads in, created on the first read
+    private Output out;             // where the prompt goes
+    private char[] buffer;          // characters read but not yet used
+    private int bufferPos;
+    private int bufferEnd;
+    private char[] line;            // the current input line
+    private int lineLength;
+    private Command[] bareCommands;  // commands without a second word, by CommandWord
+    private ArrayList<Command> batch;  // the commands of the last line
+    private int batchPos;              // the next one getCommand returns
 
     /**
      * Create a parser to read from the terminal window.
      */
     public Parser() {
-        commands = new CommandWords();
-        reader = new Scanner(System.in);
+        this(System.in, new BufferedOutput(System.out));
+    }
+
+    /**
+     * Create a parser reading from any input, such as a network session.
+     * @param in  The source of command input.
+     * @param out Where the prompt and command list are printed.
+     */
+    public Parser(InputStream in, Output out) {
+        commands = COMMAND_WORDS;
+        this.in = in;
+        this.out = out;
+        bareCommands = BARE_COMMANDS;
+        batch = new ArrayList<Command>();
+    }
+
+    /**
+     * @return A command without a second word for every CommandWord.
+     */
+    private static Command[] bareCommands() {
+        Command[] commands = new Command[CommandWord.values().length];
+        for (CommandWord commandWord : CommandWord.values()) {
+            commands[commandWord.ordinal()] = new Command(commandWord, null);
+        }
+        return commands;
     }
 
     /**
-     * @return The next command from the user.
+     * @return The next command from the user. When the input is exhausted
+     * this is a QUIT command.
      */
     public Command getCommand() {
-        String inputLine;   // will hold the full input line
-        String word1 = null;
-        String word2 = null;
+        if (batchPos == batch.size()) {
+            getCommands();
+        }
+        return batch.get(batchPos++);
+    }
+
+    /**
+     * Read a line from the user.
+     * @return The commands on it, at least one. When the input is
+     * exhausted this is a QUIT command. The list is reused by the next
+     * call.
+     */
+    public List<Command> getCommands() {
+        out.print("> ");     // print prompt
+        out.flush();         // and send the answer to the last commands with it
 
-        System.out.print("> ");     // print prompt
+        batchPos = 0;
+        if (!readLine()) {
+            batch.clear();
+            batch.add(bareCommands[CommandWord.QUIT.ordinal()]);
+            return batch;
+        }
+        return parseAll(line, 0, lineLength);
+    }
 
-        inputLine = reader.nextLine();
+    /**
+     * Interpret some text as commands separated by SEPARATOR. Blank
+     * commands are skipped.
+     * @param chars The characters holding the text.
+     * @param start Where the text starts.
+     * @param end   Where the text ends (exclusive).
+     * @return The commands, at least one: if there are none, an unknown
+     * command. The list is reused by the next call.
+     */
+    public List<Command> parseAll(char[] chars, int start, int end) {
+        batch.clear();
+        int from = start;
+        for (int i = start; i <= end; i++) {
+            if (i == end || chars[i] == SEPARATOR) {
+                if (skipSpace(chars, from, i) < i) {
+                    batch.add(parse(chars, from, i));
+                }
+                from = i + 1;
+            }
+        }
+        if (batch.isEmpty()) {
+            batch.add(bareCommands[CommandWord.UNKNOWN.ordinal()]);
+        }
+        return batch;
+    }
 
+    /**
+     * Interpret some text as a two word command. Words after the second
+     * one are ignored.
+     * @param chars The characters holding the text.
+     * @param start Where the text starts.
+     * @param end   Where the text ends (exclusive).
+     * @return The command.
+     */
+    public Command parse(char[] chars, int start, int end) {
         // Find up to two words on the line.
-        Scanner tokenizer = new Scanner(inputLine);
-        if(tokenizer.hasNext()) {
-            word1 = tokenizer.next();      // get first word
-            if(tokenizer.hasNext()) {
-                word2 = tokenizer.next();      // get second word
-                // note: we just ignore the rest of the input line.
+        int word1Start = skipSpace(chars, start, end);
+        int word1End = skipWord(chars, word1Start, end);
+        if (word1Start == word1End) {
+            return bareCommands[CommandWord.UNKNOWN.ordinal()];
+        }
+        CommandWord commandWord = commands.getCommandWord(chars, word1Start, word1End);
+
+        int word2Start = skipSpace(chars, word1End, end);
+        int word2End = skipWord(chars, word2Start, end);
+        if (word2Start == word2End) {
+            return bareCommands[commandWord.ordinal()];
+        }
+        // note: we just ignore the rest of the input line.
+        return new Command(commandWord, secondWord(chars, word2Start, word2End));
+    }
+
+    /**
+     * Turn the second word into a string. Directions are by far the most
+     * common second words, so those reuse the direction's own string.
+     */
+    private String secondWord(char[] chars, int start, int end) {
+        for (int i = 0; i < Direction.count(); i++) {
+            String word = Direction.get(i).toString();
+            if (matches(word, chars, start, end)) {
+                return word;
+            }
+        }
+        return new String(chars, start, end - start);
+    }
+
+    /**
+     * @return true if the characters from start to end spell word.
+     */
+    static boolean matches(String word, char[] chars, int start, int end) {
+        if (word.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            if (word.charAt(i) != chars[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The position of the first non-whitespace character at or
+     * after pos, or end if there is none.
+     */
+    private static int skipSpace(char[] chars, int pos, int end) {
+        while (pos < end && Character.isWhitespace(chars[pos])) {
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * @return The position of the first whitespace character at or after
+     * pos, or end if there is none.
+     */
+    private static int skipWord(char[] chars, int pos, int end) {
+        while (pos < end && !Character.isWhitespace(chars[pos])) {
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * Read the next line of input into the line buffer, without its line
+     * terminator.
+     * @return false if the input is exhausted.
+     */
+    private boolean readLine() {
+        if (line == null) {
+            line = new char[128];
+        }
+        lineLength = 0;
+        boolean readAnything = false;
+        while (true) {
+            if (bufferPos == bufferEnd && !fillBuffer()) {
+                return readAnything;
             }
+            readAnything = true;
+            char c = buffer[bufferPos++];
+            if (c == '\n') {
+                break;
+            }
+            if (lineLength == line.length) {
+                line = Arrays.copyOf(line, lineLength * 2);
+            }
+            line[lineLength++] = c;
         }
+        if (lineLength > 0 && line[lineLength - 1] == '\r') {
+            lineLength--;
+        }
+        return true;
+    }
 
-        return new Command(commands.getCommandWord(word1), word2);
+    /**
+     * Read more input into the buffer.
+     * @return false if the input is exhausted.
+     */
+    private boolean fillBuffer() {
+        try {
+            if (reader == null) {
+                reader = new InputStreamReader(in);
+                buffer = new char[1024];
+            }
+            int count = reader.read(buffer);
+            if (count <= 0) {
+                return false;
+            }
+            bufferPos = 0;
+            bufferEnd = count;
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     /**
      * Print out a list of valid command words.
      */
     public void showCommands() {
-        commands.showAll();
+        commands.showAll(out);
+    }
+
+    /**
+     * Print out a list of valid command words to the given output.
+     */
+    public void showCommands(Output out) {
+        commands.showAll(out);
     }
 }
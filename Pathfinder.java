@@ -0,0 +1,325 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * The pathfinder answers "how do I get from here to there" for a world.
+ * Routes follow the same rules as Game.goRoom: open exits can always be
+ * taken, locked exits only by a player holding their key or once the door
+ * has been unlocked (by the player, or in a shared world by anybody), and
+ * trapdoors never from the side they are defined on.
+ *
+ * For every destination, set of usable keys and set of unlocked doors
+ * those keys don't open, the pathfinder runs one
+ * breadth-first search backwards from the destination, which tells every
+ * room of the world which way to go next. These tables are cached, so
+ * after the first query for a destination every further query from any
+ * room is a walk along the table. Rooms don't change once a world is
+ * built, so the tables never go stale. A table takes a byte per room of
+ * the world, so how many are cached depends on the size of the world as
+ * well: together they take at most CACHE_BYTES.
+ *
+ * The incoming exits of every room are collected once, when the
+ * pathfinder is made, which loads every room of a lazily loaded world
+ * through its cache. They take about nine bytes per exit, and eight more
+ * per locked exit.
+ *
+ * A pathfinder may be used by many sessions at once.
+ *
+ * @author  Fredrik Ljungdahl
+ * @version 2026.10.18
+ */
+
+public class Pathfinder {
+    private static final int CACHE_SIZE = 1024;          // tables at most
+    private static final long CACHE_BYTES = 64L << 20;   // bytes of tables at most
+    private static final int OPEN = -1;       // exit needs no key
+    private static final int IMPASSABLE = -2; // trapdoor, never taken this way
+    private static final byte HERE = -2;      // the destination, while searching
+
+    private List<Room> rooms;
+    private int[] lockKeys;      // ids of the keys that open some exit
+    // incoming exits of room r are entries inStart[r] to inStart[r + 1] - 1
+    private int[] inStart;
+    private int[] inFrom;        // the room the exit leaves from
+    private byte[] inDirection;  // the direction it leaves in
+    private int[] inKey;         // the key id it needs, OPEN or IMPASSABLE
+    private int[] lockedExits;   // ids of the locked exits, sorted
+    private int[] lockedSlots;   // where each of them is among the incoming exits
+    // next-direction tables by destination and usable keys, least recently
+    // used first
+    private LinkedHashMap<Destination, byte[]> cache;
+
+    /**
+     * Create a pathfinder for a world.
+     * @param world The world to find routes in.
+     */
+    public Pathfinder(World world) {
+        rooms = world.getRooms();
+        buildReverseGraph();
+        final int cacheSize = (int) Math.max(1, Math.min(CACHE_SIZE, CACHE_BYTES / Math.max(1, rooms.size())));
+        cache = new LinkedHashMap<Destination, byte[]>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<Destination, byte[]> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Collect the exits of every room by the room they lead to.
+     */
+    private void buildReverseGraph() {
+        int roomCount = rooms.size();
+        inStart = new int[roomCount + 1];
+        for (Room room : rooms) {
+            for (int d = 0; d < Direction.count(); d++) {
+                int target = room.getNeighborId(Direction.get(d));
+                if (target >= 0) {
+                    inStart[target + 1]++;
+                }
+            }
+        }
+        for (int r = 0; r < roomCount; r++) {
+            inStart[r + 1] += inStart[r];
+        }
+        int exitCount = inStart[roomCount];
+        inFrom = new int[exitCount];
+        inDirection = new byte[exitCount];
+        inKey = new int[exitCount];
+        int[] fill = Arrays.copyOf(inStart, roomCount);
+        BitSet locks = new BitSet();
+        long[] locked = new long[16];  // exit id above, slot below
+        int lockedCount = 0;
+        for (int from = 0; from < roomCount; from++) {
+            Room room = rooms.get(from);
+            for (int d = 0; d < Direction.count(); d++) {
+                Direction direction = Direction.get(d);
+                int target = room.getNeighborId(direction);
+                if (target < 0) {
+                    continue;
+                }
+                int slot = fill[target]++;
+                inFrom[slot] = from;
+                inDirection[slot] = (byte) d;
+                switch (room.getState(direction)) {
+                    case LOCKED:
+                        inKey[slot] = room.getExitKey(direction).getId();
+                        locks.set(inKey[slot]);
+                        if (lockedCount == locked.length) {
+                            locked = Arrays.copyOf(locked, lockedCount * 2);
+                        }
+                        locked[lockedCount++] = (long) room.getExitId(direction) << 32 | slot;
+                        break;
+                    case TRAPDOOR:
+                        inKey[slot] = IMPASSABLE;
+                        break;
+                    default:
+                        inKey[slot] = OPEN;
+                        break;
+                }
+            }
+        }
+        lockKeys = locks.stream().toArray();
+        Arrays.sort(locked, 0, lockedCount);
+        lockedExits = new int[lockedCount];
+        lockedSlots = new int[lockedCount];
+        for (int i = 0; i < lockedCount; i++) {
+            lockedExits[i] = (int) (locked[i] >>> 32);
+            lockedSlots[i] = (int) locked[i];
+        }
+    }
+
+    /**
+     * Find a shortest route between two rooms, for a player who has
+     * unlocked no doors.
+     * @param from The room to start in.
+     * @param to   The room to get to.
+     * @param keys The keys the player holds.
+     * @return The directions to go in, in order; empty if from is to, and
+     * null if there is no way to get there.
+     */
+    public List<Direction> route(Room from, Room to, KeyRing keys) {
+        return route(from, to, keys, null, null);
+    }
+
+    /**
+     * Find a shortest route between two rooms.
+     * @param from   The room to start in.
+     * @param to     The room to get to.
+     * @param keys   The keys the player holds.
+     * @param doors  The doors the player has unlocked, or null for none.
+     * @param shared The world the player shares, whose unlocked doors are
+     *               open to them as well, or null if they play alone.
+     * @return The directions to go in, in order; empty if from is to, and
+     * null if there is no way to get there.
+     */
+    public List<Direction> route(Room from, Room to, KeyRing keys, ExitStates doors,
+            SharedWorld shared) {
+        byte[] next = nextDirections(to, keys, doors, shared);
+        ArrayList<Direction> route = new ArrayList<Direction>();
+        Room room = from;
+        while (room.getId() != to.getId()) {
+            int d = next[room.getId()];
+            if (d < 0) {
+                return null;
+            }
+            Direction direction = Direction.get(d);
+            route.add(direction);
+            room = room.getExit(direction);
+        }
+        return route;
+    }
+
+    /**
+     * Find which way to go from a room to get closer to another one, for
+     * a player who has unlocked no doors.
+     * @param from The room to start in.
+     * @param to   The room to get to.
+     * @param keys The keys the player holds.
+     * @return The direction of the first step, or null if there is no way
+     * to get there or from already is to.
+     */
+    public Direction nextStep(Room from, Room to, KeyRing keys) {
+        return nextStep(from, to, keys, null, null);
+    }
+
+    /**
+     * Find which way to go from a room to get closer to another one.
+     * @param from   The room to start in.
+     * @param to     The room to get to.
+     * @param keys   The keys the player holds.
+     * @param doors  The doors the player has unlocked, or null for none.
+     * @param shared The world the player shares, whose unlocked doors are
+     *               open to them as well, or null if they play alone.
+     * @return The direction of the first step, or null if there is no way
+     * to get there or from already is to.
+     */
+    public Direction nextStep(Room from, Room to, KeyRing keys, ExitStates doors,
+            SharedWorld shared) {
+        int d = nextDirections(to, keys, doors, shared)[from.getId()];
+        if (d < 0) {
+            return null;
+        }
+        return Direction.get(d);
+    }
+
+    /**
+     * Get the table telling every room which way to go to reach a
+     * destination, computing it if it isn't cached.
+     */
+    private byte[] nextDirections(Room to, KeyRing keys, ExitStates doors, SharedWorld shared) {
+        // keys that open nothing don't matter, leave them out of the cache key
+        BitSet usable = new BitSet();
+        for (int keyId : lockKeys) {
+            if (keys.has(keyId)) {
+                usable.set(keyId);
+            }
+        }
+        // and so do unlocked doors the keys open anyway
+        BitSet unlocked = new BitSet();
+        if (doors != null) {
+            for (int id = doors.nextUnlocked(0); id >= 0; id = doors.nextUnlocked(id + 1)) {
+                addUnlocked(id, usable, unlocked);
+            }
+        }
+        if (shared != null) {
+            for (int id = shared.nextUnlocked(0); id >= 0; id = shared.nextUnlocked(id + 1)) {
+                addUnlocked(id, usable, unlocked);
+            }
+        }
+        Destination destination = new Destination(to.getId(), usable, unlocked);
+        byte[] next;
+        synchronized (cache) {
+            next = cache.get(destination);
+        }
+        if (next == null) {
+            next = search(destination.room, usable, unlocked);
+            synchronized (cache) {
+                cache.put(destination, next);
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Mark the incoming exit of an unlocked door as passable, unless the
+     * usable keys open it anyway.
+     */
+    private void addUnlocked(int exitId, BitSet usable, BitSet unlocked) {
+        int i = Arrays.binarySearch(lockedExits, exitId);
+        if (i >= 0 && !usable.get(inKey[lockedSlots[i]])) {
+            unlocked.set(lockedSlots[i]);
+        }
+    }
+
+    /**
+     * Breadth-first search backwards from a destination. A room has been
+     * seen once its direction is set; the destination has none, so it is
+     * marked with HERE while searching.
+     * @return For every room the direction of its first step towards the
+     * destination, -1 if there is none.
+     */
+    private byte[] search(int target, BitSet usable, BitSet unlocked) {
+        byte[] next = new byte[rooms.size()];
+        Arrays.fill(next, (byte) -1);
+        int[] queue = new int[rooms.size()];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = target;
+        next[target] = HERE;
+        while (head < tail) {
+            int room = queue[head++];
+            for (int i = inStart[room]; i < inStart[room + 1]; i++) {
+                int from = inFrom[i];
+                if (next[from] != -1 || !passable(inKey[i], usable) && !unlocked.get(i)) {
+                    continue;
+                }
+                next[from] = inDirection[i];
+                queue[tail++] = from;
+            }
+        }
+        next[target] = -1;
+        return next;
+    }
+
+    private static boolean passable(int key, BitSet usable) {
+        if (key == OPEN) {
+            return true;
+        }
+        return key != IMPASSABLE && usable.get(key);
+    }
+
+    /**
+     * A destination room together with the keys usable on the way, and
+     * the incoming exits unlocked though no usable key opens them.
+     */
+    private static class Destination {
+        private int room;
+        private BitSet keys;
+        private BitSet unlocked;
+
+        Destination(int room, BitSet keys, BitSet unlocked) {
+            this.room = room;
+            this.keys = keys;
+            this.unlocked = unlocked;
+        }
+
+        public boolean equals(Object other) {
+            if (!(other instanceof Destination)) {
+                return false;
+            }
+            Destination that = (Destination) other;
+            return room == that.room && keys.equals(that.keys) && unlocked.equals(that.unlocked);
+        }
+
+        public int hashCode() {
+            return (room * 31 + keys.hashCode()) * 31 + unlocked.hashCode();
+        }
+    }
+}
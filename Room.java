@@ -1,5 +1,4 @@
-import java.util.Set;
-import java.util.HashMap;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Class Room - a room in an adventure game.
@@ -9,7 +8,13 @@ import java.util.HashMap;
  *
  * A "Room" represents one location in the scenery of the game.  It is 
  * connected to other rooms via exits.  For each existing exit, the room 
- * stores a reference to the neighboring room.
+ * stores an Exit with a reference to the neighboring room. The exits are
+ * kept in an array indexed by Direction, so looking one up is cheap.
+ *
+ * Rooms only describe the layout of the world, they never change once the
+ * world is built. Things that change while playing, like unlocked doors,
+ * are kept per player (see ExitStates), using the exit ids handed out by
+ * the world.
  * 
  * @author  Fredrik Ljungdahl, Michael Kölling and David J. Barnes
  * @version 2013.12.19
@@ -18,8 +23,12 @@ import java.util.HashMap;
 public class Room {
     private String description;
     private Key key;
-    private HashMap<String, Room> exits; // stores exits of this room.
-    private HashMap<String, String> exitInfo; // stores properties of the exits
+    private Exit[] exits; // stores exits of this room, by direction.
+    private int id;       // the room's index in its world
+    // the long description, built when first asked for and dropped
+    // whenever an exit changes; shared rooms may be read by many threads
+    private volatile String longDescription;
+    private volatile byte[] longDescriptionBytes;
 
     /**
      * Create a room described "description". Initially, it has
@@ -46,8 +55,8 @@ public class Room {
     private void initRoom(String description, Key key) {
         this.description = description;
         this.key = key;
-        exits = new HashMap<String, Room>();
-        exitInfo = new HashMap<String, String>();
+        exits = new Exit[Direction.count()];
+        id = -1;
     }
 
     /**
@@ -55,8 +64,8 @@ public class Room {
      * @param direction The direction of the exit.
      * @param neighbor  The room to which the exit leads.
      */
-    public void setExit(String direction, Room neighbor) {
-        setExit(direction, neighbor, "ok");
+    public void setExit(Direction direction, Room neighbor) {
+        setExit(direction, neighbor, ExitState.OPEN);
     }
     
     /**
@@ -65,20 +74,36 @@ public class Room {
      * @param neighbor  The room to which the exit leads.
      * @param key       The key needed to open the door.
      */
-    public void setExit(String direction, Room neighbor, Key key) {
-        exitInfo.put(direction + "Key", key.toString());
-        setExit(direction, neighbor, "locked");
+    public void setExit(Direction direction, Room neighbor, Key key) {
+        exits[direction.ordinal()] = new Exit(neighbor, ExitState.LOCKED, key);
+        forgetDescription();
     }
     
     /**
      * Define a special exit from this room (one-way, locked, etc).
      * @param direction The direction of the exit.
      * @param neighbor  The room to which the exit leads.
-     * @param state     The state of the exit (default "ok" - i.e. locked, trapped, ok)
+     * @param state     The state of the exit (default OPEN - i.e. LOCKED, TRAPDOOR, OPEN)
+     */
+    public void setExit(Direction direction, Room neighbor, ExitState state) {
+        exits[direction.ordinal()] = new Exit(neighbor, state, null);
+        forgetDescription();
+    }
+
+    /**
+     * Put an exit in place, as it was read from a world file.
      */
-    public void setExit(String direction, Room neighbor, String state) {
-        exits.put(direction, neighbor);
-        exitInfo.put(direction + "State", state);
+    void setExit(Direction direction, Exit exit) {
+        exits[direction.ordinal()] = exit;
+        forgetDescription();
+    }
+
+    /**
+     * Drop the cached long description, it no longer matches the exits.
+     */
+    private void forgetDescription() {
+        longDescription = null;
+        longDescriptionBytes = null;
     }
 
     /**
@@ -96,21 +121,81 @@ public class Room {
      * @return A long description of this room
      */
     public String getLongDescription() {
-        return "You are " + description + ".\n" + getExitString();
+        String text = longDescription;
+        if (text == null) {
+            text = "You are " + description + ".\n" + getExitString();
+            longDescription = text;
+        }
+        return text;
     }
 
     /**
-     * Gets the state of a specific exit
+     * Return the long description encoded as UTF-8, ready to be written
+     * to a network connection as is. The array is shared and must not be
+     * modified.
+     * @return The long description of this room as UTF-8 bytes.
+     */
+    public byte[] getLongDescriptionBytes() {
+        byte[] bytes = longDescriptionBytes;
+        if (bytes == null) {
+            bytes = getLongDescription().getBytes(StandardCharsets.UTF_8);
+            longDescriptionBytes = bytes;
+        }
+        return bytes;
+    }
+
+    /**
+     * Gets the state of a specific exit, as defined when the world was
+     * built. Whether a player has unlocked the exit is not part of it.
+     * @return The state of the exit, or null if there is no such exit.
+     */
+    public ExitState getState(Direction direction) {
+        Exit exit = exits[direction.ordinal()];
+        if (exit == null) {
+            return null;
+        }
+        return exit.getState();
+    }
+    
+    /**
+     * @return The id of this room in its world, -1 if it is in none yet.
+     */
+    public int getId() {
+        return id;
+    }
+    
+    /**
+     * Set the id of this room in its world.
      */
-    public String getState(String direction) {
-        return exitInfo.get(direction + "State");
+    void setId(int id) {
+        this.id = id;
     }
     
     /**
-     * Sets the exit state.
+     * Give the exits of this room consecutive ids.
+     * @param firstId The id of the first exit.
+     * @return The first id not used by this room.
      */
-    public void setState(String direction, String state) {
-        exitInfo.put(direction + "State", state);
+    int numberExits(int firstId) {
+        int id = firstId;
+        for (Exit exit : exits) {
+            if (exit != null) {
+                exit.setId(id++);
+            }
+        }
+        return id;
+    }
+    
+    /**
+     * Get the world-wide id of an exit.
+     * @return The id of the exit, or -1 if there is no such exit.
+     */
+    public int getExitId(Direction direction) {
+        Exit exit = exits[direction.ordinal()];
+        if (exit == null) {
+            return -1;
+        }
+        return exit.getId();
     }
     
     /**
@@ -119,12 +204,13 @@ public class Room {
      * @return Details of the room's exits.
      */
     private String getExitString() {
-        String returnString = "Exits:";
-        Set<String> keys = exits.keySet();
-        for(String exit : keys) {
-            returnString += " " + exit;
+        StringBuilder returnString = new StringBuilder("Exits:");
+        for (int i = 0; i < exits.length; i++) {
+            if (exits[i] != null) {
+                returnString.append(' ').append(Direction.get(i));
+            }
         }
-        return returnString;
+        return returnString.toString();
     }
 
     /**
@@ -133,15 +219,38 @@ public class Room {
      * @param direction The exit's direction.
      * @return The room in the given direction.
      */
-    public Room getExit(String direction) {
-        return exits.get(direction);
+    public Room getExit(Direction direction) {
+        Exit exit = exits[direction.ordinal()];
+        if (exit == null) {
+            return null;
+        }
+        return exit.getTarget();
     }
     
     /**
-     * Get the room key lock identifier.
+     * Return the id of the room in direction "direction", without
+     * loading it if the world is loaded lazily.
+     * @param direction The exit's direction.
+     * @return The room's id, or -1 if there is no exit that way.
      */
-    public String getExitKey(String direction) {
-        return exitInfo.get(direction + "Key");
+    public int getNeighborId(Direction direction) {
+        Exit exit = exits[direction.ordinal()];
+        if (exit == null) {
+            return -1;
+        }
+        return exit.getTargetId();
+    }
+    
+    /**
+     * Get the key that unlocks an exit.
+     * @return The key, or null if the exit needs none.
+     */
+    public Key getExitKey(Direction direction) {
+        Exit exit = exits[direction.ordinal()];
+        if (exit == null) {
+            return null;
+        }
+        return exit.getKey();
     }
     
     /**
@@ -0,0 +1,241 @@
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * A room cache keeps the rooms of a lazily loaded world (see WorldLoader)
+ * that were used lately. A room that isn't in the cache is loaded when it
+ * is asked for, and once the cache is full the room that was used least
+ * recently makes way. So the rooms held in memory are the ones players
+ * are in or near, however big the world is.
+ *
+ * The cache is split into segments by room id, each with a lock of its
+ * own, so players on different threads seldom wait for each other. Each
+ * segment keeps its rooms in slots, linked from the most to the least
+ * recently used; an array indexed by room id gives the slot of every room
+ * in the cache, which costs four bytes per room of the world but makes a
+ * lookup a plain array access.
+ *
+ * A room may be loaded again after it was evicted, so the same room can be
+ * held by two Room objects. Rooms must be compared by id.
+ *
+ * @author  Fredrik Ljungdahl
+ * @version 2026.10.18
+ */
+
+public class RoomCache implements RoomCacheMXBean {
+    private static final int SEGMENTS = 16;   // a power of two
+
+    /**
+     * Something that loads rooms by id.
+     */
+    public interface Loader {
+        /**
+         * @return The room with the given id, with its id set.
+         */
+        Room load(int id);
+
+        /**
+         * @return The short description of the room with the given id,
+         * read without loading the room.
+         */
+        String getDescription(int id);
+    }
+
+    private Loader loader;
+    private int roomCount;
+    private int[] slotOf;        // the slot of every room in its segment, -1 if not cached
+    private Segment[] segments;
+
+    /**
+     * Create an empty cache.
+     * @param loader    Where rooms come from.
+     * @param roomCount The number of rooms in the world.
+     * @param capacity  The most rooms to keep.
+     */
+    public RoomCache(Loader loader, int roomCount, int capacity) {
+        this.loader = loader;
+        this.roomCount = roomCount;
+        slotOf = new int[roomCount];
+        Arrays.fill(slotOf, -1);
+        segments = new Segment[SEGMENTS];
+        int perSegment = Math.max(1, (capacity + SEGMENTS - 1) / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+    }
+
+    /**
+     * Make the cache's numbers readable over JMX, as "zuul:type=RoomCache".
+     */
+    public void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                .registerMBean(this, new ObjectName("zuul:type=RoomCache"));
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register the room cache", e);
+        }
+    }
+
+    /**
+     * @return The number of rooms in the world.
+     */
+    public int getRoomCount() {
+        return roomCount;
+    }
+
+    /**
+     * Get a room, loading it if it isn't in the cache.
+     * @param id The room's id.
+     * @return The room.
+     */
+    public Room get(int id) {
+        if (id < 0 || id >= roomCount) {
+            throw new IndexOutOfBoundsException("No such room: " + id);
+        }
+        return segments[id & (SEGMENTS - 1)].get(id);
+    }
+
+    /**
+     * Get the short description of a room without loading the room or
+     * putting it in the cache, for searches through the whole world.
+     * @param id The room's id.
+     * @return The description.
+     */
+    public String getDescription(int id) {
+        if (id < 0 || id >= roomCount) {
+            throw new IndexOutOfBoundsException("No such room: " + id);
+        }
+        return loader.getDescription(id);
+    }
+
+    public long getHits() {
+        long hits = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                hits += segment.hits;
+            }
+        }
+        return hits;
+    }
+
+    public long getMisses() {
+        long misses = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                misses += segment.misses;
+            }
+        }
+        return misses;
+    }
+
+    public long getEvictions() {
+        long evictions = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                evictions += segment.evictions;
+            }
+        }
+        return evictions;
+    }
+
+    public int getSize() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size;
+            }
+        }
+        return size;
+    }
+
+    public int getCapacity() {
+        return segments.length * segments[0].rooms.length;
+    }
+
+    public String toString() {
+        long hits = getHits();
+        long misses = getMisses();
+        return String.format("%d of %d rooms cached, %d hits, %d misses (%.2f%% hit rate), %d evictions",
+            getSize(), getCapacity(), hits, misses,
+            hits + misses == 0 ? 0 : hits * 100.0 / (hits + misses), getEvictions());
+    }
+
+    /**
+     * The rooms whose id falls in one segment, in least recently used
+     * order. Everything is guarded by the segment's lock.
+     */
+    private class Segment {
+        private Room[] rooms;     // by slot
+        private int[] newer;      // the next more recently used slot, -1 for none
+        private int[] older;      // the next less recently used slot, -1 for none
+        private int newest;
+        private int oldest;
+        private int size;
+        private long hits;
+        private long misses;
+        private long evictions;
+
+        Segment(int capacity) {
+            rooms = new Room[capacity];
+            newer = new int[capacity];
+            older = new int[capacity];
+            newest = -1;
+            oldest = -1;
+        }
+
+        synchronized Room get(int id) {
+            int slot = slotOf[id];
+            if (slot >= 0) {
+                hits++;
+                if (slot != newest) {
+                    unlink(slot);
+                    linkNewest(slot);
+                }
+                return rooms[slot];
+            }
+            misses++;
+            Room room = loader.load(id);
+            if (size < rooms.length) {
+                slot = size++;
+            } else {
+                slot = oldest;
+                unlink(slot);
+                slotOf[rooms[slot].getId()] = -1;
+                evictions++;
+            }
+            rooms[slot] = room;
+            slotOf[id] = slot;
+            linkNewest(slot);
+            return room;
+        }
+
+        private void unlink(int slot) {
+            if (newer[slot] >= 0) {
+                older[newer[slot]] = older[slot];
+            } else {
+                newest = older[slot];
+            }
+            if (older[slot] >= 0) {
+                newer[older[slot]] = newer[slot];
+            } else {
+                oldest = newer[slot];
+            }
+        }
+
+        private void linkNewest(int slot) {
+            newer[slot] = -1;
+            older[slot] = newest;
+            if (newest >= 0) {
+                newer[newest] = slot;
+            } else {
+                oldest = slot;
+            }
+            newest = slot;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * The management interface of RoomCache, as seen in JConsole or any other
+ * JMX client.
+ *
+ * @author  Fredrik Ljungdahl
+ * @version 2026.10.18
+ */
+
+public interface RoomCacheMXBean {
+    /**
+     * @return How often a room asked for was in the cache.
+     */
+    long getHits();
+
+    /**
+     * @return How often a room asked for had to be loaded.
+     */
+    long getMisses();
+
+    /**
+     * @return How often a room was dropped to make way for another.
+     */
+    long getEvictions();
+
+    /**
+     * @return The number of rooms in the cache.
+     */
+    int getSize();
+
+    /**
+     * @return The most rooms the cache keeps.
+     */
+    int getCapacity();
+}
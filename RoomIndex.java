@@ -0,0 +1,432 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * A room index answers "who and what is near" for the players of a shared
+ * world: which players are within a few exits of a room, and which rooms
+ * of a region still hold a key a player hasn't found.
+ *
+ * Distances count exits followed in either direction, locked or not, so
+ * they say how close two rooms are rather than how to get from one to the
+ * other (see Pathfinder for that). For every room the index keeps the
+ * rooms up to a fixed radius away, nearest first, so a neighbourhood is
+ * read off a table instead of searched for. That costs an entry per room
+ * within the radius of each room, so the radius should be small. Making
+ * the index goes through every room of the world, and its tables grow with
+ * the world rather than with the players, so it isn't meant for lazily
+ * loaded worlds bigger than memory.
+ *
+ * Regions are the rooms in breadth-first order from the start room, cut
+ * into parts of a given size, the same way a ShardMap cuts the world into
+ * shards. Neighbouring rooms mostly end up in the same region.
+ *
+ * Games put themselves in the index (see Game.setRoomIndex) and keep it up
+ * to date as they move. The players in each room are kept in a set of
+ * their own, guarded by one of a number of locks picked by room id, so
+ * players moving on different threads seldom wait for each other. A
+ * player moving is taken out of one room and then put in the other, so a
+ * query running at the same time may miss them.
+ *
+ * @author  Fredrik Ljungdahl
+ * @version 2026.10.18
+ */
+
+public class RoomIndex {
+    public static final int MAX_RADIUS = 8;
+    private static final int STRIPES = 64;  // a power of two
+
+    private World world;
+    private int radius;
+    private int[] region;        // the region of every room, by id
+    private int regionCount;
+    // the rooms holding a key in region g are entries keyStart[g] to
+    // keyStart[g + 1] - 1 of keyRooms
+    private int[] keyStart;
+    private int[] keyRooms;
+    // the rooms within radius exits of room r, nearest first, are entries
+    // nearStart[r] to nearStart[r + 1] - 1 of nearRooms and nearHops
+    private int[] nearStart;
+    private int[] nearRooms;
+    private byte[] nearHops;
+    private Object[] locks;                          // by room id modulo STRIPES
+    private AtomicReferenceArray<Set<Game>> players; // by room id, null if empty
+    private AtomicIntegerArray regionPlayers;        // by region
+
+    /**
+     * Index the rooms of a world.
+     * @param world      The world.
+     * @param radius     The most exits a neighbourhood reaches, up to
+     *                   MAX_RADIUS.
+     * @param regionSize The number of rooms in a region.
+     */
+    public RoomIndex(World world, int radius, int regionSize) {
+        if (radius < 0 || radius > MAX_RADIUS) {
+            throw new IllegalArgumentException("Radius must be 0 to " + MAX_RADIUS);
+        }
+        if (regionSize < 1) {
+            throw new IllegalArgumentException("Regions need at least one room");
+        }
+        this.world = world;
+        this.radius = radius;
+        List<Room> rooms = world.getRooms();
+        int roomCount = rooms.size();
+        int[] order = ShardMap.breadthFirstOrder(rooms, world.getStartRoom().getId());
+        region = new int[roomCount];
+        for (int i = 0; i < order.length; i++) {
+            region[order[i]] = i / regionSize;
+        }
+        regionCount = (roomCount + regionSize - 1) / regionSize;
+        indexKeys(rooms);
+        indexNeighbourhoods(rooms);
+        locks = new Object[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        players = new AtomicReferenceArray<Set<Game>>(roomCount);
+        regionPlayers = new AtomicIntegerArray(regionCount);
+    }
+
+    /**
+     * Collect the rooms holding a key by region.
+     */
+    private void indexKeys(List<Room> rooms) {
+        keyStart = new int[regionCount + 1];
+        for (Room room : rooms) {
+            if (room.hasKey()) {
+                keyStart[region[room.getId()] + 1]++;
+            }
+        }
+        for (int g = 0; g < regionCount; g++) {
+            keyStart[g + 1] += keyStart[g];
+        }
+        keyRooms = new int[keyStart[regionCount]];
+        int[] fill = Arrays.copyOf(keyStart, regionCount);
+        for (Room room : rooms) {
+            if (room.hasKey()) {
+                keyRooms[fill[region[room.getId()]]++] = room.getId();
+            }
+        }
+    }
+
+    /**
+     * Find the rooms within the radius of every room, by a breadth-first
+     * search from each along exits in either direction.
+     */
+    private void indexNeighbourhoods(List<Room> rooms) {
+        int roomCount = rooms.size();
+        // the rooms next to room r are entries nextStart[r] to
+        // nextStart[r + 1] - 1 of next, whichever way the exit goes
+        int[] nextStart = new int[roomCount + 1];
+        for (Room room : rooms) {
+            for (int d = 0; d < Direction.count(); d++) {
+                int target = room.getNeighborId(Direction.get(d));
+                if (target >= 0) {
+                    nextStart[room.getId() + 1]++;
+                    nextStart[target + 1]++;
+                }
+            }
+        }
+        for (int r = 0; r < roomCount; r++) {
+            nextStart[r + 1] += nextStart[r];
+        }
+        int[] next = new int[nextStart[roomCount]];
+        int[] fill = Arrays.copyOf(nextStart, roomCount);
+        for (Room room : rooms) {
+            for (int d = 0; d < Direction.count(); d++) {
+                int target = room.getNeighborId(Direction.get(d));
+                if (target >= 0) {
+                    next[fill[room.getId()]++] = target;
+                    next[fill[target]++] = room.getId();
+                }
+            }
+        }
+
+        nearStart = new int[roomCount + 1];
+        nearRooms = new int[Math.max(16, roomCount * 4)];
+        nearHops = new byte[nearRooms.length];
+        int[] seenFrom = new int[roomCount];  // the search that last saw each room, plus one
+        int count = 0;
+        for (int start = 0; start < roomCount; start++) {
+            nearStart[start] = count;
+            int head = count;
+            count = addNear(start, 0, count);
+            seenFrom[start] = start + 1;
+            while (head < count && nearHops[head] < radius) {
+                int r = nearRooms[head];
+                int hops = nearHops[head] + 1;
+                head++;
+                for (int i = nextStart[r]; i < nextStart[r + 1]; i++) {
+                    if (seenFrom[next[i]] != start + 1) {
+                        seenFrom[next[i]] = start + 1;
+                        count = addNear(next[i], hops, count);
+                    }
+                }
+            }
+        }
+        nearStart[roomCount] = count;
+        nearRooms = Arrays.copyOf(nearRooms, count);
+        nearHops = Arrays.copyOf(nearHops, count);
+    }
+
+    /**
+     * Append a room to the neighbourhood table, making room if needed.
+     * @return The number of entries now in the table.
+     */
+    private int addNear(int room, int hops, int count) {
+        if (count == nearRooms.length) {
+            if (count == Integer.MAX_VALUE - 8) {
+                throw new IllegalArgumentException("Neighbourhoods too big, use a smaller radius");
+            }
+            int size = (int) Math.min(Integer.MAX_VALUE - 8, count * 2L);
+            nearRooms = Arrays.copyOf(nearRooms, size);
+            nearHops = Arrays.copyOf(nearHops, size);
+        }
+        nearRooms[count] = room;
+        nearHops[count] = (byte) hops;
+        return count + 1;
+    }
+
+    /**
+     * @return The most exits a neighbourhood reaches.
+     */
+    public int getRadius() {
+        return radius;
+    }
+
+    /**
+     * @return The number of regions. Regions are numbered from 0 to this
+     * number minus one.
+     */
+    public int getRegionCount() {
+        return regionCount;
+    }
+
+    /**
+     * @return The region a room is in.
+     */
+    public int getRegion(Room room) {
+        return region[room.getId()];
+    }
+
+    /**
+     * Count the exits between two rooms, in either direction.
+     * @return The number of exits, or -1 if it is more than the radius.
+     */
+    public int getHops(Room from, Room to) {
+        int r = from.getId();
+        for (int i = nearStart[r]; i < nearStart[r + 1]; i++) {
+            if (nearRooms[i] == to.getId()) {
+                return nearHops[i];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Get the rooms near a room, including the room itself.
+     * @param room The room.
+     * @param hops The most exits away, up to the radius.
+     * @return The rooms, nearest first.
+     */
+    public List<Room> getRoomsNear(Room room, int hops) {
+        checkHops(hops);
+        ArrayList<Room> near = new ArrayList<Room>();
+        int r = room.getId();
+        for (int i = nearStart[r]; i < nearStart[r + 1] && nearHops[i] <= hops; i++) {
+            near.add(world.getRoom(nearRooms[i]));
+        }
+        return near;
+    }
+
+    /**
+     * Get the rooms of a region holding a key a player playing alone
+     * hasn't found yet.
+     * @param region The region.
+     * @param keys   The keys the player holds.
+     * @return The rooms, in breadth-first order from the start room.
+     */
+    public List<Room> getKeyRooms(int region, KeyRing keys) {
+        return getKeyRooms(region, keys, null);
+    }
+
+    /**
+     * Get the rooms of a region holding a key that is still there for a
+     * player to find: not on their ring, and in a shared world not taken
+     * by anybody else either.
+     * @param region The region.
+     * @param keys   The keys the player holds.
+     * @param shared The world the player shares, or null if they play
+     *               alone.
+     * @return The rooms, in breadth-first order from the start room.
+     */
+    public List<Room> getKeyRooms(int region, KeyRing keys, SharedWorld shared) {
+        ArrayList<Room> found = new ArrayList<Room>();
+        for (int i = keyStart[region]; i < keyStart[region + 1]; i++) {
+            Room room = world.getRoom(keyRooms[i]);
+            if (!keys.has(room.getKey()) && (shared == null || !shared.isClaimed(room.getKey()))) {
+                found.add(room);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Put a player in a room.
+     */
+    public void enter(Game game, Room room) {
+        int r = room.getId();
+        synchronized (locks[r & (STRIPES - 1)]) {
+            Set<Game> here = players.get(r);
+            if (here == null) {
+                here = new HashSet<Game>();
+                players.set(r, here);
+            }
+            if (!here.add(game)) {
+                return;
+            }
+        }
+        regionPlayers.incrementAndGet(region[r]);
+    }
+
+    /**
+     * Take a player out of a room.
+     */
+    public void leave(Game game, Room room) {
+        int r = room.getId();
+        synchronized (locks[r & (STRIPES - 1)]) {
+            Set<Game> here = players.get(r);
+            if (here == null || !here.remove(game)) {
+                return;
+            }
+            if (here.isEmpty()) {
+                players.set(r, null);
+            }
+        }
+        regionPlayers.decrementAndGet(region[r]);
+    }
+
+    /**
+     * Move a player from one room to another.
+     */
+    public void move(Game game, Room from, Room to) {
+        if (from.getId() != to.getId()) {
+            leave(game, from);
+            enter(game, to);
+        }
+    }
+
+    /**
+     * @return The players in a room.
+     */
+    public List<Game> getPlayers(Room room) {
+        return getPlayers(room, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Get some of the players in a room, without copying a whole crowd.
+     * @param room The room.
+     * @param max  The most players to get.
+     * @return The players, in no particular order.
+     */
+    public List<Game> getPlayers(Room room, int max) {
+        ArrayList<Game> found = new ArrayList<Game>();
+        int r = room.getId();
+        if (players.get(r) == null) {
+            return found;
+        }
+        synchronized (locks[r & (STRIPES - 1)]) {
+            Set<Game> here = players.get(r);
+            if (here != null) {
+                for (Game game : here) {
+                    if (found.size() == max) {
+                        break;
+                    }
+                    found.add(game);
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @return The number of players in a room.
+     */
+    public int countPlayers(Room room) {
+        return countPlayers(room.getId());
+    }
+
+    /**
+     * Count the players near a room, including those in the room itself.
+     * @param room The room.
+     * @param hops The most exits away, up to the radius.
+     * @return The number of players.
+     */
+    public int countPlayersNear(Room room, int hops) {
+        checkHops(hops);
+        int count = 0;
+        int r = room.getId();
+        for (int i = nearStart[r]; i < nearStart[r + 1] && nearHops[i] <= hops; i++) {
+            count += countPlayers(nearRooms[i]);
+        }
+        return count;
+    }
+
+    /**
+     * Get the players near a room, including those in the room itself.
+     * @param room The room.
+     * @param hops The most exits away, up to the radius.
+     * @return The players, nearest first.
+     */
+    public List<Game> getPlayersNear(Room room, int hops) {
+        checkHops(hops);
+        ArrayList<Game> found = new ArrayList<Game>();
+        int r = room.getId();
+        for (int i = nearStart[r]; i < nearStart[r + 1] && nearHops[i] <= hops; i++) {
+            addPlayers(nearRooms[i], found);
+        }
+        return found;
+    }
+
+    /**
+     * @return The number of players in a region.
+     */
+    public int getPlayerCount(int region) {
+        return regionPlayers.get(region);
+    }
+
+    private int countPlayers(int r) {
+        if (players.get(r) == null) {
+            return 0;
+        }
+        synchronized (locks[r & (STRIPES - 1)]) {
+            Set<Game> here = players.get(r);
+            return here == null ? 0 : here.size();
+        }
+    }
+
+    private void addPlayers(int r, List<Game> found) {
+        if (players.get(r) == null) {
+            return;     // most rooms are empty, don't take the lock for them
+        }
+        synchronized (locks[r & (STRIPES - 1)]) {
+            Set<Game> here = players.get(r);
+            if (here != null) {
+                found.addAll(here);
+            }
+        }
+    }
+
+    private void checkHops(int hops) {
+        if (hops < 0 || hops > radius) {
+            throw new IllegalArgumentException("Hops must be 0 to " + radius);
+        }
+    }
+}
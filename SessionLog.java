@@ -0,0 +1,174 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * The command log of one persistent game session. Every command the game
+ * processes is appended to the log as a line of text; every so many
+ * commands a snapshot of the whole game state is taken as well, so that a
+ * restore only has to replay the commands after it.
+ *
+ * Recording a command only copies it into memory. Every round the
+ * SessionStore's committer thread takes what all sessions recorded since
+ * the last round, appends it to the store's journal and syncs that one
+ * file (group commit); only then are the commands written to the
+ * session's own log, which is synced when the journal is cleared. So a
+ * session never waits for the disk, and a round costs one sync however
+ * many sessions are playing. A crash may lose the commands of the last
+ * commit interval.
+ *
+ * @author  Fredrik Ljungdahl
+ * @version 2026.10.18
+ */
+
+public class SessionLog implements Journal {
+    static final int SNAPSHOT_MAGIC = 0x5A534E50; // "ZSNP"
+    static final int SNAPSHOT_VERSION = 2;
+
+    private String sessionId;
+    private FileChannel channel;
+    private Path snapshotFile;
+    private int snapshotInterval;
+    private long recorded;           // bytes recorded, written or not
+    private ByteArrayOutputStream pending;   // bytes recorded but not taken
+    private int sinceSnapshot;       // commands since the last snapshot
+    private byte[] pendingSnapshot;  // snapshot waiting to be taken
+    private byte[] taken;            // taken in this round, not written yet
+    private long takenOffset;        // where in the log they go
+    private byte[] takenSnapshot;    // snapshot taken in this round, not saved yet
+
+    /**
+     * Continue a command log.
+     * @param sessionId        The id of the session, as it goes into the
+     *                         store's journal.
+     * @param logFile          The log file; it is created if needed.
+     * @param snapshotFile     Where the snapshots go.
+     * @param snapshotInterval Take a snapshot every this many commands.
+     */
+    SessionLog(String sessionId, Path logFile, Path snapshotFile, int snapshotInterval)
+            throws IOException {
+        this.sessionId = sessionId;
+        channel = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        recorded = channel.size();
+        this.snapshotFile = snapshotFile;
+        this.snapshotInterval = snapshotInterval;
+        pending = new ByteArrayOutputStream();
+    }
+
+    /**
+     * Record a command the game has processed.
+     */
+    public synchronized void record(Command command, Game game) {
+        byte[] bytes = (command + "\n").getBytes(StandardCharsets.UTF_8);
+        pending.write(bytes, 0, bytes.length);
+        recorded += bytes.length;
+
+        if (++sinceSnapshot >= snapshotInterval) {
+            sinceSnapshot = 0;
+            pendingSnapshot = snapshot(game, recorded);
+        }
+    }
+
+    /**
+     * Take everything recorded since the last round, for this round to
+     * write. Only the store calls this, one round at a time.
+     * @param round The journal entry of this round, where the commands
+     *              are added, or null if they aren't journalled.
+     * @return true if there was anything to take.
+     */
+    boolean take(DataOutputStream round) throws IOException {
+        synchronized (this) {
+            taken = pending.toByteArray();
+            pending.reset();
+            takenOffset = recorded - taken.length;
+            takenSnapshot = pendingSnapshot;
+            pendingSnapshot = null;
+        }
+        if (round != null && taken.length > 0) {
+            round.writeUTF(sessionId);
+            round.writeLong(takenOffset);
+            round.writeInt(taken.length);
+            round.write(taken);
+        }
+        return taken.length > 0 || takenSnapshot != null;
+    }
+
+    /**
+     * Write what was taken in this round to the log, and save the
+     * snapshot if one was taken. The commands the snapshot covers must be
+     * safe on disk by then: journalled, or synced here.
+     * @param force Whether to sync the log before saving the snapshot.
+     */
+    void write(boolean force) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(taken);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, takenOffset + buffer.position());
+        }
+        taken = null;
+        if (force) {
+            channel.force(false);
+        }
+        if (takenSnapshot != null) {
+            Path temporary = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+            try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                out.write(ByteBuffer.wrap(takenSnapshot));
+                out.force(false);
+            }
+            Files.move(temporary, snapshotFile, StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+            takenSnapshot = null;
+        }
+    }
+
+    /**
+     * Sync the log, so the store can clear its journal.
+     */
+    void force() throws IOException {
+        channel.force(false);
+    }
+
+    /**
+     * Write and sync everything recorded and close the log. Only the
+     * store calls this, between rounds.
+     */
+    void close() throws IOException {
+        take(null);
+        write(true);
+        channel.close();
+    }
+
+    /**
+     * Take a snapshot of a game.
+     * @param game      The game.
+     * @param logOffset The size of the log up to and including the last
+     *                  command the game has processed.
+     * @return The snapshot, as it goes into the snapshot file.
+     */
+    static byte[] snapshot(Game game, long logOffset) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream data = new DataOutputStream(bytes);
+            data.writeInt(SNAPSHOT_MAGIC);
+            data.writeInt(SNAPSHOT_VERSION);
+            data.writeLong(logOffset);
+            game.saveState(data);
+            data.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            // writing to memory doesn't fail
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,347 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * The session store keeps game sessions on disk, so a player's progress
+ * survives the process. Every session has two files in the store's
+ * directory: "<id>.log", the commands it processed, one per line and only
+ * ever appended to; and "<id>.snap", a snapshot of the game state together
+ * with how much of the log it covers.
+ *
+ * Opening a session that exists restores it from its latest snapshot and
+ * replays the commands logged after that. One committer thread writes the
+ * logs of all open sessions to disk every few milliseconds, see SessionLog.
+ * Each round goes to the store's journal, "sessions.journal", first: the
+ * commands of all sessions in one entry, with one sync for all of them.
+ * The sessions' own logs are synced only when the journal has grown big
+ * enough to be cleared. When a store is created, whatever is in the
+ * journal is written to the logs again, in case the process died before
+ * the logs were synced.
+ *
+ * @author  Fredrik Ljungdahl
+ * @version 2026.10.18
+ */
+
+public class SessionStore {
+    private static final int SNAPSHOT_INTERVAL = 100;  // commands
+    private static final int COMMIT_INTERVAL = 5;      // milliseconds
+    private static final long JOURNAL_SIZE = 4 << 20;  // bytes before the journal is cleared
+    private static final String JOURNAL = "sessions.journal";
+
+    private Path directory;
+    private World world;
+    private ConcurrentHashMap<String, SessionLog> logs;
+    private Set<String> openIds;   // reserved from the start of open until end
+    private FileChannel journal;
+    private long journalSize;
+    private boolean writeFailed;   // a log may miss what the journal has
+    private ByteArrayOutputStream round;
+    private ScheduledExecutorService committer;
+
+    /**
+     * Create a session store.
+     * @param directory The directory the session files go in.
+     * @param world     The world the sessions are played in.
+     */
+    public SessionStore(Path directory, World world) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.world = world;
+        logs = new ConcurrentHashMap<String, SessionLog>();
+        openIds = ConcurrentHashMap.<String>newKeySet();
+        journal = FileChannel.open(directory.resolve(JOURNAL), StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+        recover();
+        round = new ByteArrayOutputStream();
+        committer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "session-committer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        committer.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                commitAll();
+            }
+        }, COMMIT_INTERVAL, COMMIT_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Open a session: restore it if it was played before, or start a new
+     * game otherwise. From now on every command the game processes is
+     * logged. A session whose time ran out is over: it is started afresh.
+     * A session can only be open once at a time.
+     * @param sessionId The session's id; letters, digits, - and _ only.
+     * @param in        Where the player's commands are read from.
+     * @param out       Where the game's messages are written to.
+     * @return The game.
+     */
+    public Game open(String sessionId, InputStream in, Output out) throws IOException {
+        if (!sessionId.matches("[A-Za-z0-9_-]+")) {
+            throw new IllegalArgumentException("Bad session id: " + sessionId);
+        }
+        if (!openIds.add(sessionId)) {
+            throw new IllegalStateException("Session " + sessionId + " is already open");
+        }
+        try {
+            Path logFile = directory.resolve(sessionId + ".log");
+            Path snapshotFile = directory.resolve(sessionId + ".snap");
+
+            Game game = new Game(world, in, out);
+            long offset = 0;
+            if (Files.exists(snapshotFile)) {
+                offset = restoreSnapshot(game, snapshotFile);
+            }
+            if (Files.exists(logFile)) {
+                replay(game, logFile, offset);
+            }
+            if (game.getTimeLeft() <= 0) {
+                game = new Game(world, in, out);
+                reset(logFile, snapshotFile);
+            }
+
+            SessionLog log = new SessionLog(sessionId, logFile, snapshotFile, SNAPSHOT_INTERVAL);
+            logs.put(sessionId, log);
+            game.setJournal(log);
+            return game;
+        } catch (IOException | RuntimeException e) {
+            openIds.remove(sessionId);
+            throw e;
+        }
+    }
+
+    /**
+     * Throw away the files of a session that is over. The journal is
+     * cleared first, so what it still holds of the old log can't be
+     * written into the new one after a crash.
+     */
+    private synchronized void reset(Path logFile, Path snapshotFile) throws IOException {
+        clearJournal();
+        Files.deleteIfExists(snapshotFile);
+        Files.deleteIfExists(logFile);
+    }
+
+    /**
+     * End a session: write out its log and close it. The session's files
+     * stay, so it can be opened again.
+     */
+    public synchronized void end(String sessionId) throws IOException {
+        SessionLog log = logs.remove(sessionId);
+        if (log != null) {
+            try {
+                log.close();
+            } finally {
+                openIds.remove(sessionId);
+            }
+        }
+    }
+
+    /**
+     * End all open sessions and stop the committer thread.
+     */
+    public synchronized void close() throws IOException {
+        committer.shutdown();
+        for (String sessionId : logs.keySet()) {
+            end(sessionId);
+        }
+        journal.close();
+    }
+
+    /**
+     * Commit the logs of all open sessions: journal what they recorded
+     * in one entry, sync the journal, then write it to the logs. Run by
+     * the committer thread.
+     */
+    private synchronized void commitAll() {
+        if (!journal.isOpen()) {
+            return;
+        }
+        List<SessionLog> taken = new ArrayList<SessionLog>();
+        try {
+            round.reset();
+            DataOutputStream data = new DataOutputStream(round);
+            for (SessionLog log : logs.values()) {
+                if (log.take(data)) {
+                    taken.add(log);
+                }
+            }
+            if (round.size() > 0) {
+                byte[] bytes = round.toByteArray();
+                CRC32 crc = new CRC32();
+                crc.update(bytes);
+                ByteBuffer entry = ByteBuffer.allocate(bytes.length + 8);
+                entry.putInt(bytes.length).put(bytes).putInt((int) crc.getValue()).flip();
+                while (entry.hasRemaining()) {
+                    journalSize += journal.write(entry, journalSize);
+                }
+                journal.force(false);
+            }
+        } catch (IOException e) {
+            // what was taken is lost, but nothing that was committed before
+            System.err.println("Could not write session journal: " + e);
+            return;
+        }
+        for (SessionLog log : taken) {
+            try {
+                log.write(false);
+            } catch (IOException e) {
+                // keep writing the others; the journal has it, so keep that
+                writeFailed = true;
+                System.err.println("Could not write session log: " + e);
+            }
+        }
+        if (journalSize >= JOURNAL_SIZE && !writeFailed) {
+            try {
+                clearJournal();
+            } catch (IOException e) {
+                System.err.println("Could not clear session journal: " + e);
+            }
+        }
+    }
+
+    /**
+     * Sync the logs of all open sessions and clear the journal.
+     */
+    private void clearJournal() throws IOException {
+        if (writeFailed) {
+            throw new IOException("A session log misses what the journal holds");
+        }
+        for (SessionLog log : logs.values()) {
+            log.force();
+        }
+        journal.truncate(0);
+        journal.force(false);
+        journalSize = 0;
+    }
+
+    /**
+     * Write what is in the journal to the logs it belongs to, sync them
+     * and clear the journal. An entry the process died in the middle of
+     * writing, and everything after it, is left out: it was never
+     * committed.
+     */
+    private void recover() throws IOException {
+        long size = journal.size();
+        if (size == 0) {
+            return;
+        }
+        ByteBuffer bytes = ByteBuffer.allocate((int) size);
+        while (bytes.hasRemaining() && journal.read(bytes, bytes.position()) >= 0) {
+        }
+        bytes.flip();
+        Map<String, FileChannel> channels = new HashMap<String, FileChannel>();
+        try {
+            while (bytes.remaining() >= 8) {
+                int length = bytes.getInt();
+                if (length < 0 || length > bytes.remaining() - 4) {
+                    break;
+                }
+                byte[] entry = new byte[length];
+                bytes.get(entry);
+                CRC32 crc = new CRC32();
+                crc.update(entry);
+                if (bytes.getInt() != (int) crc.getValue()) {
+                    break;
+                }
+                DataInputStream data = new DataInputStream(new ByteArrayInputStream(entry));
+                while (data.available() > 0) {
+                    String sessionId = data.readUTF();
+                    long offset = data.readLong();
+                    byte[] commands = new byte[data.readInt()];
+                    data.readFully(commands);
+                    FileChannel channel = channels.get(sessionId);
+                    if (channel == null) {
+                        channel = FileChannel.open(directory.resolve(sessionId + ".log"),
+                            StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                        channels.put(sessionId, channel);
+                    }
+                    ByteBuffer buffer = ByteBuffer.wrap(commands);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer, offset + buffer.position());
+                    }
+                }
+            }
+            for (FileChannel channel : channels.values()) {
+                channel.force(false);
+            }
+        } finally {
+            for (FileChannel channel : channels.values()) {
+                channel.close();
+            }
+        }
+        journal.truncate(0);
+        journal.force(false);
+    }
+
+    /**
+     * Restore a game from a snapshot.
+     * @return The size of the log the snapshot covers.
+     */
+    private long restoreSnapshot(Game game, Path snapshotFile) throws IOException {
+        byte[] bytes = Files.readAllBytes(snapshotFile);
+        DataInputStream data = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (data.readInt() != SessionLog.SNAPSHOT_MAGIC
+                || data.readInt() != SessionLog.SNAPSHOT_VERSION) {
+            throw new IOException(snapshotFile + ": not a session snapshot");
+        }
+        long offset = data.readLong();
+        game.restoreState(data);
+        return offset;
+    }
+
+    /**
+     * Replay the commands logged from the given offset on. A line that
+     * was only partly written when the process died is cut off the log.
+     */
+    private void replay(Game game, Path logFile, long offset) throws IOException {
+        try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            if (offset >= size) {
+                return;
+            }
+            ByteBuffer tail = ByteBuffer.allocate((int) (size - offset));
+            while (tail.hasRemaining() && channel.read(tail, offset + tail.position()) >= 0) {
+            }
+            byte[] bytes = tail.array();
+
+            Parser parser = new Parser(InputStream.nullInputStream(), new NullOutput());
+            int lineStart = 0;
+            for (int i = 0; i < bytes.length; i++) {
+                if (bytes[i] == '\n') {
+                    char[] line = new String(bytes, lineStart, i - lineStart, StandardCharsets.UTF_8)
+                        .toCharArray();
+                    game.replay(parser.parse(line, 0, line.length));
+                    lineStart = i + 1;
+                }
+            }
+            if (lineStart < bytes.length) {
+                channel.truncate(offset + lineStart);
+            }
+        }
+    }
+}
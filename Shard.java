@@ -0,0 +1,325 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * A shard hosts the players who are in its part of the world, as given by
+ * a ShardMap. Players talk to the shards through a ShardGateway, which
+ * sends their lines to the shard they are on; the shard runs the commands
+ * and sends back what the game printed.
+ *
+ * When a command takes a player into a room of another shard (by walking
+ * or by beaming back to a waypoint), the shard hands the player over: it
+ * sends their state, as written by Game.saveState, to the other shard,
+ * together with the commands of the line it hasn't run yet. The player's
+ * room, waypoint, time, keys and opened doors all travel along, and the
+ * rest of the line is run on the new shard without a round trip through
+ * the gateway. A line the gateway sent to the old shard before it heard of
+ * the move is passed on to the new one.
+ *
+ * A shard gets its messages one at a time from the Transport, so it needs
+ * no locks. If it can't run a player's message it sends the gateway an
+ * ERROR, which ends the player's game, rather than leaving the gateway
+ * waiting for an answer. Every shard holds the whole world; it just
+ * doesn't host the players outside its own part. So sharding spreads the
+ * players over machines, not the world: each one needs memory for all of
+ * it.
+ *
+ * @author  Fredrik Ljungdahl
+ * @version 2026.10.18
+ */
+
+public class Shard implements Transport.Receiver {
+    // the kinds of messages between the shards and the gateway
+    static final byte JOIN = 1;       // gateway to shard: a new player
+    static final byte LINE = 2;       // gateway to shard: a line of commands
+    static final byte LEAVE = 3;      // gateway to shard: forget a player
+    static final byte HANDOFF = 4;    // shard to shard: a player moves over
+    static final byte OUTPUT = 5;     // shard to gateway: what the game printed
+    static final byte ERROR = 6;      // shard to gateway: the player's game failed
+
+    // flags of an OUTPUT message
+    static final int DONE = 1;        // the whole line has been run
+    static final int ENDED = 2;       // and it ended the game
+
+    private World world;
+    private ShardMap shards;
+    private int id;
+    private int gateway;
+    private Transport transport;
+    private Parser parser;
+    private HashMap<Integer, Player> players;
+    private HashMap<Integer, Integer> movedTo;  // shard of players who left
+
+    /**
+     * Create a shard and start receiving its messages.
+     * @param world     The world.
+     * @param shards    Which shard owns which room.
+     * @param id        This shard's number, which is also its node.
+     * @param transport The transport to the other shards and the gateway,
+     *                  which is node shards.getShardCount().
+     */
+    public Shard(World world, ShardMap shards, int id, Transport transport) {
+        this.world = world;
+        this.shards = shards;
+        this.id = id;
+        this.transport = transport;
+        gateway = shards.getShardCount();
+        parser = new Parser();
+        players = new HashMap<Integer, Player>();
+        movedTo = new HashMap<Integer, Integer>();
+        transport.register(id, this);
+    }
+
+    public void receive(byte[] message) {
+        int playerId = -1;
+        try {
+            DataInputStream data = new DataInputStream(new ByteArrayInputStream(message));
+            byte type = data.readByte();
+            playerId = data.readInt();
+            switch (type) {
+                case JOIN:
+                    join(playerId);
+                    break;
+
+                case LINE:
+                    line(playerId, readText(data), message);
+                    break;
+
+                case LEAVE:
+                    players.remove(playerId);
+                    movedTo.remove(playerId);
+                    break;
+
+                case HANDOFF:
+                    arrive(playerId, data);
+                    break;
+
+                default:
+                    throw new IOException("Unknown message type: " + type);
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Shard " + id + ": could not handle message: " + e);
+            if (playerId >= 0) {
+                fail(playerId, e);
+            }
+        }
+    }
+
+    /**
+     * Give up on a player whose message couldn't be handled: forget them
+     * and tell the gateway, so it doesn't wait for an answer.
+     */
+    private void fail(int playerId, Exception e) {
+        players.remove(playerId);
+        movedTo.remove(playerId);
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream data = new DataOutputStream(bytes);
+            data.writeByte(ERROR);
+            data.writeInt(playerId);
+            writeText(data, "The game has failed: " + e.getMessage() + "\n");
+            transport.send(gateway, bytes.toByteArray());
+        } catch (IOException | RuntimeException again) {
+            System.err.println("Shard " + id + ": could not tell the gateway: " + again);
+        }
+    }
+
+    /**
+     * Start a new player's game.
+     */
+    private void join(int playerId) {
+        Player player = new Player();
+        player.game.printWelcome();
+        players.put(playerId, player);
+        movedTo.remove(playerId);
+        if (!moveOn(playerId, player, null, 0)) {
+            sendOutput(playerId, player, DONE);
+        }
+    }
+
+    /**
+     * Run a line of commands, or pass it on if the player has left.
+     */
+    private void line(int playerId, String line, byte[] message) {
+        Player player = players.get(playerId);
+        if (player == null) {
+            Integer shard = movedTo.get(playerId);
+            if (shard != null) {
+                transport.send(shard, message);
+            }
+            return;
+        }
+        run(playerId, player, line);
+    }
+
+    /**
+     * Take over a player handed over by another shard.
+     */
+    private void arrive(int playerId, DataInputStream data) throws IOException {
+        Player player = new Player();
+        player.sequence = data.readInt();
+        player.game.restoreState(data);
+        String rest = readText(data);
+        players.put(playerId, player);
+        movedTo.remove(playerId);
+        if (rest.isEmpty()) {
+            sendOutput(playerId, player, DONE);
+        } else {
+            run(playerId, player, rest);
+        }
+    }
+
+    /**
+     * Run the commands of a line, until one ends the game or takes the
+     * player to another shard.
+     */
+    private void run(int playerId, Player player, String line) {
+        char[] chars = line.toCharArray();
+        List<Command> commands = parser.parseAll(chars, 0, chars.length);
+        for (int i = 0; i < commands.size(); i++) {
+            if (player.game.processCommand(commands.get(i))) {
+                player.out.println("Thank you for playing.  Good bye.");
+                sendOutput(playerId, player, DONE | ENDED);
+                players.remove(playerId);
+                return;
+            }
+            if (moveOn(playerId, player, commands, i + 1)) {
+                return;
+            }
+        }
+        sendOutput(playerId, player, DONE);
+    }
+
+    /**
+     * Hand the player over to another shard if they are in its part of
+     * the world.
+     * @param commands The commands of the line, or null.
+     * @param next     The first one not run yet.
+     * @return true if the player was handed over.
+     */
+    private boolean moveOn(int playerId, Player player, List<Command> commands, int next) {
+        int owner = shards.getShard(player.game.getCurrentRoom());
+        if (owner == id) {
+            return false;
+        }
+        sendOutput(playerId, player, 0);
+        StringBuilder rest = new StringBuilder();
+        if (commands != null) {
+            for (int i = next; i < commands.size(); i++) {
+                if (rest.length() > 0) {
+                    rest.append(Parser.SEPARATOR).append(' ');
+                }
+                rest.append(commands.get(i));
+            }
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream data = new DataOutputStream(bytes);
+            data.writeByte(HANDOFF);
+            data.writeInt(playerId);
+            data.writeInt(player.sequence);
+            player.game.saveState(data);
+            writeText(data, rest.toString());
+            transport.send(owner, bytes.toByteArray());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        players.remove(playerId);
+        movedTo.put(playerId, owner);
+        return true;
+    }
+
+    /**
+     * Send what the player's game printed since the last time to the
+     * gateway.
+     */
+    private void sendOutput(int playerId, Player player, int flags) {
+        player.out.flush();
+        byte[] text = player.text.toByteArray();
+        player.text.reset();
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(text.length + 20);
+            DataOutputStream data = new DataOutputStream(bytes);
+            data.writeByte(OUTPUT);
+            data.writeInt(playerId);
+            data.writeInt(player.sequence++);
+            data.writeByte(flags);
+            data.writeInt(id);
+            data.writeInt(text.length);
+            data.write(text);
+            transport.send(gateway, bytes.toByteArray());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Build a message from the gateway to a shard.
+     * @param type     JOIN, LINE or LEAVE.
+     * @param playerId The player.
+     * @param line     The line, for LINE.
+     */
+    static byte[] message(byte type, int playerId, String line) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream data = new DataOutputStream(bytes);
+            data.writeByte(type);
+            data.writeInt(playerId);
+            if (line != null) {
+                writeText(data, line);
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Write text of any length to a message, as its length and UTF-8
+     * bytes. (writeUTF can't take more than 64 KB.)
+     */
+    static void writeText(DataOutputStream data, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        data.writeInt(bytes.length);
+        data.write(bytes);
+    }
+
+    /**
+     * Read text written by writeText.
+     */
+    static String readText(DataInputStream data) throws IOException {
+        int length = data.readInt();
+        if (length < 0 || length > data.available()) {
+            throw new IOException("Bad text length: " + length);
+        }
+        byte[] bytes = new byte[length];
+        data.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A player on this shard: their game, and what it has printed.
+     */
+    private class Player {
+        private ByteArrayOutputStream text;
+        private Output out;
+        private Game game;
+        private int sequence;    // of the next OUTPUT message
+
+        Player() {
+            text = new ByteArrayOutputStream();
+            out = new BufferedOutput(text);
+            game = new Game(world, out);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * The gateway is where players enter a sharded game. It sends every line
+ * a player types to the shard the player is on, and passes what the
+ * shards print back to the player's Output.
+ *
+ * A player handed over in the middle of a line gets part of the answer
+ * from the old shard and the rest from the new one, over different
+ * connections, so the parts may arrive the wrong way round. The shards
+ * number them, and the gateway holds back a part until the ones before it
+ * are out. From the parts it also learns which shard the player is on
+ * now.
+ *
+ * A shard that fails to run a player's line sends an error instead, which
+ * ends the player's game. In case no answer comes at all (a lost message,
+ * a shard gone), the gateway waits at most REPLY_TIMEOUT for each line and
+ * then ends the game as well.
+ *
+ * Usage: java ShardGateway [shards] [tcp]
+ * runs a whole sharded game in one process and plays it on the console:
+ * the shards and the gateway talk through a LocalTransport, or over TCP
+ * on loopback with "tcp".
+ *
+ * @author  Fredrik Ljungdahl
+ * @version 2026.10.18
+ */
+
+public class ShardGateway implements Transport.Receiver {
+    private static final long REPLY_TIMEOUT = 10;  // seconds
+
+    private ShardMap shards;
+    private Transport transport;
+    private int startShard;
+    private ConcurrentHashMap<Integer, Session> sessions;
+
+    public static void main(String[] args) throws Exception {
+        int shardCount = 2;
+        if (args.length > 0) {
+            shardCount = Integer.parseInt(args[0]);
+        }
+        World world = new World();
+        ShardMap shards = new ShardMap(world, shardCount);
+        Transport transport;
+        if (args.length > 1 && args[1].equals("tcp")) {
+            List<InetSocketAddress> addresses = new ArrayList<InetSocketAddress>();
+            for (int node = 0; node <= shardCount; node++) {
+                addresses.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            }
+            transport = new SocketTransport(addresses);
+        } else {
+            transport = new LocalTransport();
+        }
+        for (int i = 0; i < shardCount; i++) {
+            new Shard(world, shards, i, transport);
+        }
+        ShardGateway gateway = new ShardGateway(world, shards, transport);
+        System.err.println(shardCount + " shards, " + shards.getCrossingExits()
+            + " exits leading from one to another");
+
+        Output out = new BufferedOutput(System.out);
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        boolean finished = gateway.join(0, out);
+        while (!finished) {
+            out.print("> ");
+            out.flush();
+            String line = in.readLine();
+            if (line == null) {
+                break;
+            }
+            finished = gateway.play(0, line);
+        }
+        gateway.leave(0);
+        transport.close();
+    }
+
+    /**
+     * Create a gateway and start receiving its messages.
+     * @param world     The world.
+     * @param shards    Which shard owns which room.
+     * @param transport The transport to the shards; the gateway is node
+     *                  shards.getShardCount().
+     */
+    public ShardGateway(World world, ShardMap shards, Transport transport) {
+        this.shards = shards;
+        this.transport = transport;
+        startShard = shards.getShard(world.getStartRoom());
+        sessions = new ConcurrentHashMap<Integer, Session>();
+        transport.register(shards.getShardCount(), this);
+    }
+
+    /**
+     * Start a game for a new player, and wait for the welcome.
+     * @param playerId A number no other player of the gateway has.
+     * @param out      Where the player's messages are written to.
+     * @return true if the game ended right away.
+     */
+    public boolean join(int playerId, Output out) throws InterruptedException {
+        Session session = new Session(out, startShard);
+        if (sessions.putIfAbsent(playerId, session) != null) {
+            throw new IllegalArgumentException("Player " + playerId + " has joined already");
+        }
+        transport.send(startShard, Shard.message(Shard.JOIN, playerId, null));
+        return await(session);
+    }
+
+    /**
+     * Run a line of commands for a player, and wait until it has been
+     * run. Lines of different players may be played at the same time.
+     * @param playerId The player.
+     * @param line     The line they typed.
+     * @return true if the line ended the game.
+     */
+    public boolean play(int playerId, String line) throws InterruptedException {
+        Session session = sessions.get(playerId);
+        if (session == null) {
+            throw new IllegalArgumentException("No such player: " + playerId);
+        }
+        transport.send(session.shard, Shard.message(Shard.LINE, playerId, line));
+        return await(session);
+    }
+
+    /**
+     * Wait until a player's line has been run, or for REPLY_TIMEOUT.
+     * @return true if the game has ended, on the shard or by timing out.
+     */
+    private boolean await(Session session) throws InterruptedException {
+        if (!session.replies.tryAcquire(REPLY_TIMEOUT, TimeUnit.SECONDS)) {
+            synchronized (session) {
+                session.out.println("The game doesn't answer. Good bye.");
+                session.out.flush();
+            }
+            session.ended = true;
+        }
+        return session.ended;
+    }
+
+    /**
+     * Forget a player, whether or not their game has ended.
+     * @param playerId The player.
+     */
+    public void leave(int playerId) {
+        if (sessions.remove(playerId) != null) {
+            byte[] message = Shard.message(Shard.LEAVE, playerId, null);
+            for (int i = 0; i < shards.getShardCount(); i++) {
+                transport.send(i, message);
+            }
+        }
+    }
+
+    /**
+     * @return The shard a player was on when their last line was done.
+     */
+    public int getShard(int playerId) {
+        return sessions.get(playerId).shard;
+    }
+
+    public void receive(byte[] message) {
+        try {
+            DataInputStream data = new DataInputStream(new ByteArrayInputStream(message));
+            byte type = data.readByte();
+            if (type != Shard.OUTPUT && type != Shard.ERROR) {
+                throw new IOException("Not an output message");
+            }
+            Session session = sessions.get(data.readInt());
+            if (session == null) {
+                return;
+            }
+            if (type == Shard.ERROR) {
+                // whatever else was on its way won't be waited for
+                synchronized (session) {
+                    session.out.print(Shard.readText(data));
+                    session.out.flush();
+                }
+                session.ended = true;
+                session.replies.release();
+                return;
+            }
+            int sequence = data.readInt();
+            if (sequence != session.nextSequence) {
+                session.early.put(sequence, message);
+                return;
+            }
+            deliver(session, data);
+            byte[] next;
+            while ((next = session.early.remove(session.nextSequence)) != null) {
+                data = new DataInputStream(new ByteArrayInputStream(next));
+                data.skipBytes(9);
+                deliver(session, data);
+            }
+        } catch (IOException e) {
+            System.err.println("Gateway: bad message: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Pass a part of the answer to the player, the data positioned right
+     * after its sequence number.
+     */
+    private void deliver(Session session, DataInputStream data) throws IOException {
+        session.nextSequence++;
+        int flags = data.readByte();
+        session.shard = data.readInt();
+        byte[] text = new byte[data.readInt()];
+        data.readFully(text);
+        synchronized (session) {
+            session.out.print(new String(text, StandardCharsets.UTF_8));
+            session.out.flush();
+        }
+        if ((flags & Shard.DONE) != 0) {
+            session.ended = (flags & Shard.ENDED) != 0;
+            session.replies.release();
+        }
+    }
+
+    /**
+     * A player at the gateway. Apart from the shard and the ending, which
+     * the player's thread reads, and the output, which it writes to when
+     * no answer comes (holding the session's lock, as the gateway's thread
+     * does), it is only used on the gateway's thread.
+     */
+    private static class Session {
+        private Output out;
+        private volatile int shard;
+        private volatile boolean ended;
+        private int nextSequence;
+        private HashMap<Integer, byte[]> early;   // parts that came too soon
+        private Semaphore replies;                // released when a line is done
+
+        Session(Output out, int shard) {
+            this.out = out;
+            this.shard = shard;
+            early = new HashMap<Integer, byte[]>();
+            replies = new Semaphore(0);
+        }
+    }
+}
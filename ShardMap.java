@@ -0,0 +1,143 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * A shard map splits the rooms of a world between a number of shards, each
+ * of which hosts the players in its own rooms (see Shard). Every time a
+ * player walks from a room of one shard into a room of another they have
+ * to be handed over, so rooms that lead into each other should be on the
+ * same shard as much as possible.
+ *
+ * The rooms are put in breadth-first order, following exits both ways from
+ * the start room, and that order is cut into equal parts. Neighbouring
+ * rooms end up close together in the order, so only the exits around the
+ * cuts cross from shard to shard. Rooms the search doesn't get to come
+ * last, in id order.
+ *
+ * Every shard and the gateway build the same map from the same world, so
+ * they agree on who owns which room without asking each other. Building
+ * the map goes through every room, loading all of a lazily loaded world
+ * through its cache once.
+ *
+ * @author  Fredrik Ljungdahl
+ * @version 2026.10.18
+ */
+
+public class ShardMap {
+    private int shardCount;
+    private int[] owner;        // the shard of every room, by id
+    private int crossingExits;  // exits leading from one shard to another
+
+    /**
+     * Split the rooms of a world between shards.
+     * @param world      The world.
+     * @param shardCount The number of shards.
+     */
+    public ShardMap(World world, int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Need at least one shard");
+        }
+        this.shardCount = shardCount;
+        List<Room> rooms = world.getRooms();
+        int[] order = breadthFirstOrder(rooms, world.getStartRoom().getId());
+        owner = new int[rooms.size()];
+        for (int i = 0; i < order.length; i++) {
+            owner[order[i]] = (int) ((long) i * shardCount / order.length);
+        }
+        for (Room room : rooms) {
+            for (int d = 0; d < Direction.count(); d++) {
+                int target = room.getNeighborId(Direction.get(d));
+                if (target >= 0 && owner[target] != getShard(room)) {
+                    crossingExits++;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The number of shards.
+     */
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * @return The shard that owns a room.
+     */
+    public int getShard(Room room) {
+        return owner[room.getId()];
+    }
+
+    /**
+     * @return The number of exits leading from a room of one shard to a
+     * room of another.
+     */
+    public int getCrossingExits() {
+        return crossingExits;
+    }
+
+    /**
+     * @return The ids of all rooms, in breadth-first order from the start
+     * room along exits in either direction, followed by the rooms the
+     * search doesn't get to. RoomIndex cuts its regions from this order.
+     */
+    static int[] breadthFirstOrder(List<Room> rooms, int start) {
+        int roomCount = rooms.size();
+        // exits into each room: entries inStart[r] to inStart[r + 1] - 1
+        int[] inStart = new int[roomCount + 1];
+        for (Room room : rooms) {
+            for (int d = 0; d < Direction.count(); d++) {
+                int target = room.getNeighborId(Direction.get(d));
+                if (target >= 0) {
+                    inStart[target + 1]++;
+                }
+            }
+        }
+        for (int r = 0; r < roomCount; r++) {
+            inStart[r + 1] += inStart[r];
+        }
+        int[] inFrom = new int[inStart[roomCount]];
+        int[] fill = Arrays.copyOf(inStart, roomCount);
+        for (Room room : rooms) {
+            for (int d = 0; d < Direction.count(); d++) {
+                int target = room.getNeighborId(Direction.get(d));
+                if (target >= 0) {
+                    inFrom[fill[target]++] = room.getId();
+                }
+            }
+        }
+
+        int[] order = new int[roomCount];
+        boolean[] seen = new boolean[roomCount];
+        int head = 0;
+        int tail = 0;
+        order[tail++] = start;
+        seen[start] = true;
+        while (head < tail) {
+            int r = order[head++];
+            Room room = rooms.get(r);
+            for (int d = 0; d < Direction.count(); d++) {
+                int target = room.getNeighborId(Direction.get(d));
+                if (target >= 0 && !seen[target]) {
+                    seen[target] = true;
+                    order[tail++] = target;
+                }
+            }
+            for (int i = inStart[r]; i < inStart[r + 1]; i++) {
+                if (!seen[inFrom[i]]) {
+                    seen[inFrom[i]] = true;
+                    order[tail++] = inFrom[i];
+                }
+            }
+        }
+        for (int r = 0; r < roomCount; r++) {
+            if (!seen[r]) {
+                order[tail++] = r;
+            }
+        }
+        return order;
+    }
+}
@@ -0,0 +1,235 @@
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * A shared world is a world whose players play together rather than side
+ * by side. They see each other come and go, a key picked up by one player
+ * is gone for the others, and a door unlocked by one is open for everyone.
+ * The rooms themselves never change, as in any world; what the players
+ * share is kept here, in bitsets by key and exit id that are updated with
+ * compare-and-set, so claiming a key or a door takes no lock and exactly
+ * one player gets each key.
+ *
+ * What happens in a room is told to the players there through the room's
+ * notice board: a ring of the latest notices, numbered in the order they
+ * were put up. Putting one up is one atomic increment and one write, however
+ * many players are in the room, and nobody's output is touched. Every player
+ * remembers the number of the last notice they read and reads the newer
+ * ones in a batch with their next answer (see Game). A player more than a
+ * ring's worth of notices behind misses the oldest ones.
+ *
+ * Where the players are is kept in a RoomIndex.
+ *
+ * @author  Fredrik Ljungdahl
+ * @version 2026.10.18
+ */
+
+public class SharedWorld {
+    private static final int BOARD_SIZE = 64;  // a power of two
+
+    private RoomIndex roomIndex;
+    private AtomicLongArray claimedKeys;     // one bit per key id
+    private AtomicLongArray unlockedExits;   // one bit per exit id
+    private AtomicReferenceArray<Board> boards; // by room id, made when first used
+
+    /**
+     * Share a world between its players.
+     * @param world     The world.
+     * @param roomIndex The index keeping track of where the players are.
+     */
+    public SharedWorld(World world, RoomIndex roomIndex) {
+        this.roomIndex = roomIndex;
+        claimedKeys = new AtomicLongArray((world.getKeyCount() + 63) >>> 6);
+        unlockedExits = new AtomicLongArray((world.getExitCount() + 63) >>> 6);
+        boards = new AtomicReferenceArray<Board>(world.getRooms().size());
+    }
+
+    /**
+     * @return The index keeping track of where the players are.
+     */
+    public RoomIndex getRoomIndex() {
+        return roomIndex;
+    }
+
+    /**
+     * Claim a key for a player.
+     * @return true if nobody had claimed it before.
+     */
+    public boolean claim(Key key) {
+        return setBit(claimedKeys, key.getId());
+    }
+
+    /**
+     * @return true if some player has claimed a key.
+     */
+    public boolean isClaimed(Key key) {
+        return getBit(claimedKeys, key.getId());
+    }
+
+    /**
+     * Share what a player brings into the world, for example from a
+     * game restored from disk: the keys on their ring are claimed and the
+     * doors they unlocked are unlocked for everybody. A key somebody else
+     * has claimed in the meantime is theirs, and is taken off the ring.
+     * @return The number of keys taken off the ring.
+     */
+    public int share(KeyRing keys, ExitStates exitStates) {
+        int lost = 0;
+        for (int id = keys.nextKey(0); id >= 0; id = keys.nextKey(id + 1)) {
+            if (!setBit(claimedKeys, id)) {
+                keys.remove(id);
+                lost++;
+            }
+        }
+        for (int id = exitStates.nextUnlocked(0); id >= 0; id = exitStates.nextUnlocked(id + 1)) {
+            setBit(unlockedExits, id);
+        }
+        return lost;
+    }
+
+    /**
+     * Unlock an exit for every player.
+     */
+    public void unlock(int exitId) {
+        setBit(unlockedExits, exitId);
+    }
+
+    /**
+     * @return true if some player has unlocked an exit.
+     */
+    public boolean isUnlocked(int exitId) {
+        return exitId >= 0 && getBit(unlockedExits, exitId);
+    }
+
+    /**
+     * @return The id of the first exit unlocked for everybody from the
+     * given id on, or -1 if there is none.
+     */
+    public int nextUnlocked(int exitId) {
+        if (exitId < 0) {
+            return -1;
+        }
+        int word = exitId >>> 6;
+        if (word >= unlockedExits.length()) {
+            return -1;
+        }
+        long rest = unlockedExits.get(word) & (-1L << exitId);
+        while (rest == 0) {
+            if (++word == unlockedExits.length()) {
+                return -1;
+            }
+            rest = unlockedExits.get(word);
+        }
+        return (word << 6) + Long.numberOfTrailingZeros(rest);
+    }
+
+    /**
+     * Put up a notice in a room, for the players there to read.
+     * @param room The room.
+     * @param from The player the notice is about, who doesn't read it.
+     * @param text The notice.
+     */
+    public void tell(Room room, Game from, String text) {
+        Board board = getBoard(room.getId());
+        long position = board.next.getAndIncrement();
+        board.notices.set((int) position & (BOARD_SIZE - 1), new Notice(position, from, text));
+    }
+
+    /**
+     * @return The number the next notice put up in a room will get. A
+     * player entering the room reads from here on.
+     */
+    public long getNoticePosition(Room room) {
+        Board board = boards.get(room.getId());
+        return board == null ? 0 : board.next.get();
+    }
+
+    /**
+     * Read the notices put up in a room since a player last looked.
+     * @param room     The room.
+     * @param position The number of the first notice not read yet.
+     * @param reader   The player reading; their own notices are skipped.
+     * @param texts    Where the notices are added.
+     * @return The number of the first notice still not read.
+     */
+    public long readNotices(Room room, long position, Game reader, List<String> texts) {
+        Board board = boards.get(room.getId());
+        if (board == null) {
+            return position;
+        }
+        long end = board.next.get();
+        if (end - position > BOARD_SIZE) {
+            position = end - BOARD_SIZE;   // the older ones are overwritten
+        }
+        for (; position < end; position++) {
+            Notice notice = board.notices.get((int) position & (BOARD_SIZE - 1));
+            if (notice == null || notice.position < position) {
+                break;      // numbered but not written yet, read it next time
+            }
+            if (notice.position == position && notice.from != reader) {
+                texts.add(notice.text);
+            }
+        }
+        return position;
+    }
+
+    private Board getBoard(int room) {
+        Board board = boards.get(room);
+        if (board == null) {
+            boards.compareAndSet(room, null, new Board());
+            board = boards.get(room);
+        }
+        return board;
+    }
+
+    /**
+     * Set a bit.
+     * @return true if it wasn't set before.
+     */
+    private static boolean setBit(AtomicLongArray bits, int index) {
+        int word = index >>> 6;
+        long mask = 1L << index;
+        while (true) {
+            long old = bits.get(word);
+            if ((old & mask) != 0) {
+                return false;
+            }
+            if (bits.compareAndSet(word, old, old | mask)) {
+                return true;
+            }
+        }
+    }
+
+    private static boolean getBit(AtomicLongArray bits, int index) {
+        return (bits.get(index >>> 6) & (1L << index)) != 0;
+    }
+
+    /**
+     * The notice board of one room.
+     */
+    private static class Board {
+        private AtomicLong next = new AtomicLong();  // the number of the next notice
+        private AtomicReferenceArray<Notice> notices = new AtomicReferenceArray<Notice>(BOARD_SIZE);
+    }
+
+    /**
+     * A notice, with its number so a reader can tell whether it is the
+     * one they are looking for or has been overwritten by a newer one.
+     */
+    private static class Notice {
+        private long position;
+        private Game from;
+        private String text;
+
+        Notice(long position, Game from, String text) {
+            this.position = position;
+            this.from = from;
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,502 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * The simulation plays a world through with many simulated players, or
+ * agents, to see how hard it is: how many agents win before their time
+ * runs out, how long that takes them, and which rooms they spend their
+ * time in. An agent wins by reaching the goal room or, if there is none,
+ * by finding every key.
+ *
+ * Agents follow the rules of Game: "go", "mark" and "back" each take one
+ * unit of time, a locked door opens once its key has been found, and a key
+ * is picked up on entering its room. They don't go through the Parser or
+ * print anything, though, and they are kept in a struct of arrays: the
+ * rooms of a batch of agents are one int array, their waypoints another
+ * and their keys a long array, one bit per key. A batch is played one time
+ * step at a time for all of its agents, and the batches are spread over
+ * the cores with fork/join. The exits of the world are flattened into
+ * arrays too, so a step doesn't touch any Room.
+ *
+ * Every agent has a random number generator of its own, seeded from the
+ * seed of the run and the agent's number, and the batches' results are
+ * sums, so a run gives the same results however it is split up.
+ *
+ * Usage: java Simulation [-c rooms] [agents [random|seeker [seed [world file [goal]]]]]
+ * where goal is a word from the description of the goal room. With -c a
+ * binary world is loaded lazily, keeping that many rooms in memory; the
+ * exits are flattened all the same, which goes through every room once.
+ *
+ * @author  Fredrik Ljungdahl
+ * @version 2026.10.18
+ */
+
+public class Simulation {
+    private static final int OPEN = -1;       // exit needs no key
+    private static final int IMPASSABLE = -2; // trapdoor, never taken this way
+    private static final int MIN_BATCH = 1024; // agents per fork/join task
+    private static final int NO_ROOM = -1;
+    // what a SEEKER plans to do next
+    private static final byte MARK = 1;
+    private static final byte BACK = 2;
+
+    /**
+     * How the agents choose what to do.
+     */
+    public enum Policy {
+        // take a random exit, now and then marking the room or going back
+        RANDOM,
+        // take a random exit, but mark the room in front of a locked door
+        // and go back there once a new key is found
+        SEEKER
+    }
+
+    private int roomCount;
+    private int startRoom;
+    private int goalRoom;        // NO_ROOM: the goal is to find every key
+    private int keyCount;
+    private int keyWords;        // longs per agent for the keys
+    private int maxExits;
+    private int[] exitCount;     // number of exits of every room
+    // the exits of room r are entries r * maxExits to r * maxExits + exitCount[r] - 1
+    private int[] exitTo;
+    private int[] exitKey;       // key id, OPEN or IMPASSABLE
+    private int[] roomKey;       // id of the key lying in each room, -1 if none
+    private World world;
+    private int timeLimit;
+    private ForkJoinPool pool;
+
+    public static void main(String[] args) throws IOException {
+        int arg = 0;
+        int cachedRooms = 0;
+        if (args.length > 1 && args[0].equals("-c")) {
+            cachedRooms = Integer.parseInt(args[1]);
+            arg = 2;
+        }
+        int agents = args.length > arg ? Integer.parseInt(args[arg]) : 1000000;
+        Policy policy = args.length > arg + 1 ? Policy.valueOf(args[arg + 1].toUpperCase()) : Policy.RANDOM;
+        long seed = args.length > arg + 2 ? Long.parseLong(args[arg + 2]) : 1;
+        World world = new World();
+        if (args.length > arg + 3) {
+            world = cachedRooms > 0 ? WorldLoader.load(Paths.get(args[arg + 3]), cachedRooms)
+                : WorldLoader.load(Paths.get(args[arg + 3]));
+        }
+        if (world.getRoomCache() != null) {
+            world.getRoomCache().register();
+        }
+        Room goal = null;
+        if (args.length > arg + 4) {
+            List<Room> matches = world.findRooms(args[arg + 4]);
+            if (matches.size() != 1) {
+                System.err.println("No single room like " + args[arg + 4]);
+                System.exit(1);
+            }
+            goal = matches.get(0);
+        }
+
+        Simulation simulation = new Simulation(world, goal);
+        long start = System.nanoTime();
+        Results results = simulation.run(agents, policy, seed);
+        long nanos = System.nanoTime() - start;
+        System.out.print(results);
+        System.out.printf("%d agents, %d steps in %d ms (%.1f M steps/s)\n", agents,
+            results.getSteps(), nanos / 1000000, results.getSteps() * 1000.0 / nanos);
+    }
+
+    /**
+     * Create a simulation of a world.
+     * @param world The world to play.
+     * @param goal  The room to get to, or null to find every key.
+     */
+    public Simulation(World world, Room goal) {
+        this(world, goal, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create a simulation of a world, running its tasks in the given pool.
+     * @param world The world to play.
+     * @param goal  The room to get to, or null to find every key.
+     * @param pool  The pool to run in.
+     */
+    public Simulation(World world, Room goal, ForkJoinPool pool) {
+        this.pool = pool;
+        this.world = world;
+        List<Room> rooms = world.getRooms();
+        roomCount = rooms.size();
+        startRoom = world.getStartRoom().getId();
+        goalRoom = goal == null ? NO_ROOM : goal.getId();
+        keyCount = world.getKeyCount();
+        keyWords = Math.max(1, (keyCount + 63) >>> 6);
+        timeLimit = Game.START_TIME;
+
+        maxExits = Direction.count();
+        exitCount = new int[roomCount];
+        exitTo = new int[roomCount * maxExits];
+        exitKey = new int[roomCount * maxExits];
+        roomKey = new int[roomCount];
+        for (int r = 0; r < roomCount; r++) {
+            Room room = rooms.get(r);
+            roomKey[r] = room.hasKey() ? room.getKey().getId() : -1;
+            for (int d = 0; d < maxExits; d++) {
+                Direction direction = Direction.get(d);
+                int target = room.getNeighborId(direction);
+                if (target < 0) {
+                    continue;
+                }
+                int e = r * maxExits + exitCount[r]++;
+                exitTo[e] = target;
+                switch (room.getState(direction)) {
+                    case LOCKED:
+                        exitKey[e] = room.getExitKey(direction).getId();
+                        break;
+
+                    case TRAPDOOR:
+                        exitKey[e] = IMPASSABLE;
+                        break;
+
+                    default:
+                        exitKey[e] = OPEN;
+                        break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Set the time every agent has, counted in commands. By default it
+     * is the time a player of Game has.
+     */
+    public void setTimeLimit(int timeLimit) {
+        this.timeLimit = timeLimit;
+    }
+
+    /**
+     * Play the world through with a number of agents.
+     * @param agents The number of agents.
+     * @param policy How they choose what to do.
+     * @param seed   The seed of their random numbers; the same seed gives
+     *               the same results.
+     * @return What happened.
+     */
+    public Results run(int agents, Policy policy, long seed) {
+        int batch = Math.max(MIN_BATCH, agents / (pool.getParallelism() * 4) + 1);
+        return pool.invoke(new Play(0, agents, batch, policy, seed));
+    }
+
+    /**
+     * Play a range of agents, in batches split over the pool.
+     */
+    @SuppressWarnings("serial") // never serialized, only forked
+    private class Play extends RecursiveTask<Results> {
+        private int from;
+        private int to;
+        private int batch;
+        private Policy policy;
+        private long seed;
+
+        Play(int from, int to, int batch, Policy policy, long seed) {
+            this.from = from;
+            this.to = to;
+            this.batch = batch;
+            this.policy = policy;
+            this.seed = seed;
+        }
+
+        protected Results compute() {
+            if (to - from > batch) {
+                int middle = (from + to) >>> 1;
+                Play right = new Play(middle, to, batch, policy, seed);
+                right.fork();
+                Results left = new Play(from, middle, batch, policy, seed).compute();
+                return left.add(right.join());
+            }
+            return new Batch(from, to, seed).play(policy);
+        }
+    }
+
+    /**
+     * The state of a batch of agents, one array per part of it.
+     */
+    private class Batch {
+        private int size;
+        private int[] room;
+        private int[] waypoint;   // NO_ROOM if never marked
+        private long[] keys;      // keyWords per agent
+        private int[] keysFound;
+        private long[] random;    // the state of every agent's generator
+        private int[] wonAt;      // the time step an agent won at, or -1
+        private byte[] plan;      // for SEEKER: what to do next
+        private Results results;
+
+        Batch(int from, int to, long seed) {
+            size = to - from;
+            room = new int[size];
+            waypoint = new int[size];
+            keys = new long[size * keyWords];
+            keysFound = new int[size];
+            random = new long[size];
+            wonAt = new int[size];
+            plan = new byte[size];
+            results = new Results(roomCount, timeLimit);
+            for (int a = 0; a < size; a++) {
+                room[a] = startRoom;
+                waypoint[a] = NO_ROOM;
+                wonAt[a] = -1;
+                random[a] = mix(seed + (from + a) * 0x9E3779B97F4A7C15L);
+                results.visits[startRoom]++;
+            }
+        }
+
+        Results play(Policy policy) {
+            int playing = size;
+            if (goalRoom == startRoom || (goalRoom == NO_ROOM && keyCount == 0)) {
+                playing = 0;
+                for (int a = 0; a < size; a++) {
+                    win(a, 0);
+                }
+            }
+            for (int time = 1; time <= timeLimit && playing > 0; time++) {
+                for (int a = 0; a < size; a++) {
+                    if (wonAt[a] < 0 && step(a, policy)) {
+                        win(a, time);
+                        playing--;
+                        results.steps++;
+                    }
+                }
+                results.steps += playing;
+            }
+            results.agents = size;
+            results.lost = playing;
+            for (int a = 0; a < size; a++) {
+                results.keysFound += keysFound[a];
+            }
+            return results;
+        }
+
+        private void win(int a, int time) {
+            wonAt[a] = time;
+            results.won++;
+            results.winTimes[time]++;
+        }
+
+        /**
+         * Let an agent do one thing.
+         * @return true if the agent has won.
+         */
+        private boolean step(int a, Policy policy) {
+            int r = room[a];
+            if (policy == Policy.SEEKER && plan[a] != 0) {
+                byte next = plan[a];
+                plan[a] = 0;
+                if (next == MARK) {
+                    waypoint[a] = r;
+                    return false;
+                }
+                return waypoint[a] != NO_ROOM && enter(a, waypoint[a], policy);
+            }
+            int choice = nextInt(a, 20);
+            if (policy == Policy.RANDOM && choice == 0) {
+                waypoint[a] = r;
+                return false;
+            }
+            if (policy == Policy.RANDOM && choice == 1) {
+                return waypoint[a] != NO_ROOM && enter(a, waypoint[a], policy);
+            }
+            if (exitCount[r] == 0) {
+                return false;   // nowhere to go: a wasted command
+            }
+            int e = r * maxExits + nextInt(a, exitCount[r]);
+            int key = exitKey[e];
+            if (key == IMPASSABLE) {
+                return false;
+            }
+            if (key != OPEN && !hasKey(a, key)) {
+                if (policy == Policy.SEEKER && waypoint[a] != r) {
+                    plan[a] = MARK;
+                }
+                return false;
+            }
+            return enter(a, exitTo[e], policy);
+        }
+
+        /**
+         * Move an agent into a room and pick up its key.
+         * @return true if the agent has won.
+         */
+        private boolean enter(int a, int target, Policy policy) {
+            room[a] = target;
+            results.visits[target]++;
+            int key = roomKey[target];
+            if (key >= 0 && !hasKey(a, key)) {
+                keys[a * keyWords + (key >>> 6)] |= 1L << key;
+                keysFound[a]++;
+                if (policy == Policy.SEEKER && waypoint[a] != NO_ROOM) {
+                    plan[a] = BACK;
+                }
+            }
+            if (goalRoom == NO_ROOM) {
+                return keysFound[a] == keyCount;
+            }
+            return target == goalRoom;
+        }
+
+        private boolean hasKey(int a, int key) {
+            return (keys[a * keyWords + (key >>> 6)] & (1L << key)) != 0;
+        }
+
+        /**
+         * @return A random number from 0 to bound - 1 from an agent's
+         * generator.
+         */
+        private int nextInt(int a, int bound) {
+            long state = random[a] + 0x9E3779B97F4A7C15L;
+            random[a] = state;
+            return (int) (((mix(state) >>> 32) * bound) >>> 32);
+        }
+    }
+
+    /**
+     * Scramble the bits of a number (the SplitMix64 finalizer).
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * The results of a run, or of part of one.
+     */
+    public class Results {
+        private long agents;
+        private long won;
+        private long lost;        // time ran out
+        private long steps;       // commands given by all agents
+        private long keysFound;
+        private long[] winTimes;  // number of agents that won at each time
+        private long[] visits;    // times each room was entered
+
+        Results(int roomCount, int timeLimit) {
+            winTimes = new long[timeLimit + 1];
+            visits = new long[roomCount];
+        }
+
+        /**
+         * Add the results of other agents.
+         */
+        Results add(Results other) {
+            agents += other.agents;
+            won += other.won;
+            lost += other.lost;
+            steps += other.steps;
+            keysFound += other.keysFound;
+            for (int t = 0; t < winTimes.length; t++) {
+                winTimes[t] += other.winTimes[t];
+            }
+            for (int r = 0; r < visits.length; r++) {
+                visits[r] += other.visits[r];
+            }
+            return this;
+        }
+
+        /**
+         * @return The share of the agents that won.
+         */
+        public double getWinRate() {
+            return agents == 0 ? 0 : (double) won / agents;
+        }
+
+        /**
+         * @return The mean time the winners took, in commands.
+         */
+        public double getMeanTimeToWin() {
+            long total = 0;
+            for (int t = 0; t < winTimes.length; t++) {
+                total += t * winTimes[t];
+            }
+            return won == 0 ? 0 : (double) total / won;
+        }
+
+        /**
+         * @return The time the winners took, in commands, at a percentile
+         * from 0 to 1; -1 if nobody won.
+         */
+        public int getTimeToWin(double fraction) {
+            long rank = (long) Math.ceil(fraction * won);
+            long seen = 0;
+            for (int t = 0; t < winTimes.length; t++) {
+                seen += winTimes[t];
+                if (seen >= rank && seen > 0) {
+                    return t;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * @return The number of agents whose time ran out.
+         */
+        public long getLost() {
+            return lost;
+        }
+
+        /**
+         * @return The number of commands the agents gave altogether.
+         */
+        public long getSteps() {
+            return steps;
+        }
+
+        /**
+         * @return The mean number of keys an agent found.
+         */
+        public double getMeanKeysFound() {
+            return agents == 0 ? 0 : (double) keysFound / agents;
+        }
+
+        /**
+         * @return How often each room was entered, by room id; the start
+         * counts as entering the start room.
+         */
+        public long[] getVisits() {
+            return visits;
+        }
+
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            text.append(String.format("%d agents: %.2f%% won, %d ran out of time, %.2f keys found on average\n",
+                agents, getWinRate() * 100, lost, getMeanKeysFound()));
+            if (won > 0) {
+                text.append(String.format("time to win: mean %.1f, median %d, p90 %d, p99 %d\n",
+                    getMeanTimeToWin(), getTimeToWin(0.5), getTimeToWin(0.9), getTimeToWin(0.99)));
+            }
+            long total = 0;
+            for (long count : visits) {
+                total += count;
+            }
+            // the most visited rooms, at most ten
+            boolean[] shown = new boolean[visits.length];
+            for (int i = 0; i < Math.min(10, visits.length); i++) {
+                int most = -1;
+                for (int r = 0; r < visits.length; r++) {
+                    if (!shown[r] && (most < 0 || visits[r] > visits[most])) {
+                        most = r;
+                    }
+                }
+                if (visits[most] == 0) {
+                    break;
+                }
+                shown[most] = true;
+                text.append(String.format("%6.2f%%  %s\n", visits[most] * 100.0 / total,
+                    world.getRoom(most).getShortDescription()));
+            }
+            return text.toString();
+        }
+    }
+}
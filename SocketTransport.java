@@ -0,0 +1,207 @@
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * A Transport connecting nodes over TCP, so the shards of a game can run
+ * in different processes or on different machines. Every node listens on
+ * an address of its own; all processes are given the same list of
+ * addresses, in node order. A node registered with port 0 listens on a
+ * free port, which is then put in the list, so nodes in the same process
+ * (a test on loopback, say) find each other.
+ *
+ * A message goes over the wire as its length followed by its bytes. Each
+ * process opens one connection to every node it sends to, and messages to
+ * a node are written one after the other on it, which keeps them in
+ * order. Messages read from all connections of a node are handed to its
+ * receiver on one thread.
+ *
+ * @author  Fredrik Ljungdahl
+ * @version 2026.10.18
+ */
+
+public class SocketTransport implements Transport {
+    private static final int MAX_MESSAGE = 1 << 24;
+
+    private List<InetSocketAddress> addresses;
+    private ConcurrentHashMap<Integer, SocketChannel> connections;
+    private List<ServerSocketChannel> listeners;
+    private List<ExecutorService> nodeThreads;
+    private volatile boolean closed;
+
+    /**
+     * Create a transport for nodes at the given addresses.
+     * @param addresses The address of every node, in node order.
+     */
+    public SocketTransport(List<InetSocketAddress> addresses) {
+        this.addresses = new ArrayList<InetSocketAddress>(addresses);
+        connections = new ConcurrentHashMap<Integer, SocketChannel>();
+        listeners = new ArrayList<ServerSocketChannel>();
+        nodeThreads = new ArrayList<ExecutorService>();
+    }
+
+    /**
+     * @return The address a node listens on.
+     */
+    public synchronized InetSocketAddress getAddress(int node) {
+        return addresses.get(node);
+    }
+
+    public void register(final int node, final Receiver receiver) {
+        final ServerSocketChannel listener;
+        try {
+            listener = ServerSocketChannel.open();
+            listener.bind(getAddress(node));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        final ExecutorService nodeThread = Executors.newSingleThreadExecutor(daemon("node-" + node));
+        synchronized (this) {
+            try {
+                addresses.set(node, (InetSocketAddress) listener.getLocalAddress());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            listeners.add(listener);
+            nodeThreads.add(nodeThread);
+        }
+        daemon("node-" + node + "-accept").newThread(new Runnable() {
+            public void run() {
+                try {
+                    while (true) {
+                        final SocketChannel channel = listener.accept();
+                        daemon("node-" + node + "-read").newThread(new Runnable() {
+                            public void run() {
+                                read(channel, nodeThread, receiver);
+                            }
+                        }).start();
+                    }
+                } catch (IOException e) {
+                    // the listener was closed
+                }
+            }
+        }).start();
+    }
+
+    /**
+     * Read messages from a connection until it is closed, and hand them
+     * to the node's thread.
+     */
+    private void read(SocketChannel channel, ExecutorService nodeThread, final Receiver receiver) {
+        try (DataInputStream in = new DataInputStream(Channels.newInputStream(channel))) {
+            while (true) {
+                int length = in.readInt();
+                if (length < 0 || length > MAX_MESSAGE) {
+                    throw new IOException("Bad message length: " + length);
+                }
+                final byte[] message = new byte[length];
+                in.readFully(message);
+                nodeThread.execute(new Runnable() {
+                    public void run() {
+                        receiver.receive(message);
+                    }
+                });
+            }
+        } catch (EOFException | RejectedExecutionException e) {
+            // the sender or this transport closed
+        } catch (IOException e) {
+            if (!closed) {
+                System.err.println("Connection lost: " + e.getMessage());
+            }
+        }
+    }
+
+    public void send(int node, byte[] message) {
+        SocketChannel channel = connect(node);
+        ByteBuffer[] buffers = {
+            ByteBuffer.allocate(4).putInt(0, message.length),
+            ByteBuffer.wrap(message)
+        };
+        synchronized (channel) {
+            try {
+                while (buffers[1].hasRemaining()) {
+                    channel.write(buffers);
+                }
+            } catch (IOException e) {
+                connections.remove(node, channel);
+                if (!closed) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The connection to a node, opened on first use.
+     */
+    private SocketChannel connect(int node) {
+        SocketChannel channel = connections.get(node);
+        if (channel != null) {
+            return channel;
+        }
+        synchronized (this) {
+            channel = connections.get(node);
+            if (channel == null) {
+                try {
+                    channel = SocketChannel.open(addresses.get(node));
+                    channel.socket().setTcpNoDelay(true);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                connections.put(node, channel);
+            }
+            return channel;
+        }
+    }
+
+    public synchronized void close() {
+        closed = true;
+        for (ServerSocketChannel listener : listeners) {
+            closeQuietly(listener);
+        }
+        for (SocketChannel channel : connections.values()) {
+            closeQuietly(channel);
+        }
+        for (ExecutorService nodeThread : nodeThreads) {
+            nodeThread.shutdown();
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // closing anyway
+        }
+    }
+
+    /**
+     * @return A factory for daemon threads with the given name.
+     */
+    private static ThreadFactory daemon(final String name) {
+        return new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+}
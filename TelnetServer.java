@@ -0,0 +1,633 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * The telnet server lets players play over TCP, with telnet, netcat or
+ * anything else that sends lines of text. All connections are served by
+ * one thread with a selector: a connection only costs its socket and the
+ * state of its game, not a thread blocked in a read.
+ *
+ * Input is read into one direct buffer shared by all connections and cut
+ * into lines right there; each line is parsed with Parser.parseAll and its
+ * commands are handed to the connection's Game. Telnet option negotiation
+ * is skipped. The game's answer is queued and written together with the
+ * next prompt in one gathering write; room descriptions are queued as the
+ * room's cached bytes, without encoding them again. A player who doesn't
+ * read their answers isn't read from either, until the answers are
+ * written.
+ *
+ * Given a TimerWheel the server plays in real time (see Timer), and closes
+ * a connection when the player's time is up. With -w, "back" walks to
+ * the waypoint instead of beaming there. With -s the players play
+ * together in a SharedWorld. With -c a binary world is loaded lazily,
+ * keeping that many rooms in memory; players can't find each other then.
+ * With -p the games are kept in a SessionStore in the given directory:
+ * players are asked for their name first, and carry on where they left
+ * off when they come back under it.
+ *
+ * Usage: java TelnetServer [-r] [-w] [-s] [-c rooms] [-p directory] [port [world file]]
+ *
+ * @author  Fredrik Ljungdahl
+ * @version 2026.10.18
+ */
+
+public class TelnetServer {
+    private static final int DEFAULT_PORT = 2323;
+    private static final int MAX_LINE = 1024;          // bytes
+    private static final int MAX_PENDING = 64 * 1024;  // unwritten bytes before we stop reading
+    private static final ByteBuffer PROMPT = ByteBuffer.allocateDirect(2)
+        .put((byte) '>').put((byte) ' ').flip();
+    private static final ByteBuffer NEWLINE = ByteBuffer.allocateDirect(1)
+        .put((byte) '\n').flip();
+
+    // telnet commands
+    private static final int IAC = 255;
+    private static final int SB = 250;
+    private static final int SE = 240;
+    private static final int WILL = 251;
+    private static final int DONT = 254;
+
+    private World world;
+    private TimerWheel wheel;      // null unless playing in real time
+    private EventBus events;       // null if nobody listens
+    private Metrics metrics;       // null if nobody counts
+    private boolean walkBack;      // "back" walks to the waypoint
+    private RoomIndex roomIndex;   // null if players can't find each other
+    private SharedWorld shared;    // null unless the players play together
+    private SessionStore store;    // null unless games are kept on disk
+    private int playerCount;       // players connected so far, to name them
+    private Selector selector;
+    private ServerSocketChannel server;
+    private ByteBuffer readBuffer; // shared by all connections
+    private char[] lineChars;      // the line being parsed
+    private Parser parser;         // only used to parse, shared by all connections
+    private ConcurrentLinkedQueue<Connection> low;      // time got low, to be told
+    private ConcurrentLinkedQueue<Connection> expired;
+    private volatile boolean running;
+
+    /**
+     * Start a telnet server for the default world from the command line.
+     */
+    public static void main(String[] args) throws IOException {
+        TimerWheel wheel = null;
+        int arg = 0;
+        if (arg < args.length && args[arg].equals("-r")) {
+            wheel = new TimerWheel(100);
+            arg++;
+        }
+        boolean walkBack = false;
+        if (arg < args.length && args[arg].equals("-w")) {
+            walkBack = true;
+            arg++;
+        }
+        boolean together = false;
+        if (arg < args.length && args[arg].equals("-s")) {
+            together = true;
+            arg++;
+        }
+        int cachedRooms = 0;
+        if (arg + 1 < args.length && args[arg].equals("-c")) {
+            cachedRooms = Integer.parseInt(args[arg + 1]);
+            arg += 2;
+        }
+        Path storeDirectory = null;
+        if (arg + 1 < args.length && args[arg].equals("-p")) {
+            storeDirectory = Paths.get(args[arg + 1]);
+            arg += 2;
+        }
+        int port = arg < args.length ? Integer.parseInt(args[arg++]) : DEFAULT_PORT;
+        World world = new World();
+        if (arg < args.length) {
+            world = cachedRooms > 0 ? WorldLoader.load(Paths.get(args[arg]), cachedRooms)
+                : WorldLoader.load(Paths.get(args[arg]));
+        }
+        if (world.getRoomCache() != null) {
+            if (together) {
+                System.err.println("Playing together needs the whole world in memory, leave out -c");
+                System.exit(2);
+            }
+            world.getRoomCache().register();
+        }
+        TelnetServer server = new TelnetServer(world, wheel, new InetSocketAddress(port));
+        Metrics metrics = new Metrics();
+        metrics.register();
+        server.setMetrics(metrics);
+        server.setWalkBack(walkBack);
+        if (together) {
+            server.setSharedWorld(new SharedWorld(world, new RoomIndex(world, 2, 64)));
+        } else if (world.getRoomCache() == null) {
+            // the index has tables for every room, too big for a lazy world
+            server.setRoomIndex(new RoomIndex(world, 2, 64));
+        }
+        if (storeDirectory != null) {
+            server.setSessionStore(new SessionStore(storeDirectory, world));
+        }
+        System.out.println("Listening on port " + server.getPort());
+        server.run();
+    }
+
+    /**
+     * Create a telnet server and start listening.
+     * @param world   The world shared by all sessions.
+     * @param wheel   The timer wheel counting down the players' time, or
+     *                null to count their commands instead.
+     * @param address The address to listen on.
+     */
+    public TelnetServer(World world, TimerWheel wheel, InetSocketAddress address) throws IOException {
+        this.world = world;
+        this.wheel = wheel;
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(address, 1024);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        readBuffer = ByteBuffer.allocateDirect(64 * 1024);
+        lineChars = new char[MAX_LINE];
+        parser = new Parser(InputStream.nullInputStream(), new NullOutput());
+        low = new ConcurrentLinkedQueue<Connection>();
+        expired = new ConcurrentLinkedQueue<Connection>();
+        running = true;
+    }
+
+    /**
+     * Set the bus that sessions started from now on publish their events
+     * on, or null for none.
+     */
+    public void setEventBus(EventBus events) {
+        this.events = events;
+    }
+
+    /**
+     * Set the metrics that sessions started from now on count their
+     * commands in, or null for none.
+     */
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Set whether "back" walks to the waypoint in sessions started from
+     * now on, see Game.setWalkBack.
+     */
+    public void setWalkBack(boolean walkBack) {
+        this.walkBack = walkBack;
+    }
+
+    /**
+     * Set the index the players of sessions started from now on are kept
+     * in, so they can find each other, or null for none.
+     */
+    public void setRoomIndex(RoomIndex roomIndex) {
+        this.roomIndex = roomIndex;
+    }
+
+    /**
+     * Set the shared world the players of sessions started from now on
+     * play together in, or null to let them play alone.
+     */
+    public void setSharedWorld(SharedWorld shared) {
+        this.shared = shared;
+    }
+
+    /**
+     * Set the store that the games of players connecting from now on are
+     * kept in, or null to keep them only while they are played. With a
+     * store, players are asked for their name, which is their session id.
+     */
+    public void setSessionStore(SessionStore store) {
+        this.store = store;
+    }
+
+    /**
+     * @return The port the server listens on.
+     */
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) server.getLocalAddress()).getPort();
+    }
+
+    /**
+     * Serve connections until stop is called. This is the server's only
+     * thread.
+     */
+    public void run() throws IOException {
+        try {
+            while (running) {
+                selector.select();
+                Connection connection;
+                while ((connection = low.poll()) != null) {
+                    connection.timeLow();
+                }
+                while ((connection = expired.poll()) != null) {
+                    connection.timeUp();
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    connection = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            connection.read();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            connection.write();
+                        }
+                    } catch (IOException e) {
+                        connection.close();
+                    }
+                }
+            }
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                key.channel().close();
+            }
+            selector.close();
+        }
+    }
+
+    /**
+     * Make run return and close all connections.
+     */
+    public void stop() {
+        running = false;
+        selector.wakeup();
+    }
+
+    /**
+     * Accept the waiting connections and start a game for each.
+     */
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = server.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+            Connection connection = new Connection(channel, key);
+            key.attach(connection);
+            connection.start();
+        }
+    }
+
+    /**
+     * One player's connection. It is also the Output of the player's
+     * game: what the game prints is collected here and queued for writing
+     * when the game is done with a command.
+     */
+    private class Connection implements Output {
+        private SocketChannel channel;
+        private SelectionKey key;
+        private Game game;             // null until the player has given their name
+        private String sessionId;      // null unless the game is in the store
+        private byte[] line;           // the line read so far
+        private int lineLength;        // -1 while skipping a too long line
+        private int telnet;            // telnet command state, see readByte
+        private StringBuilder text;    // printed but not queued yet
+        private ByteBuffer[] pending;  // queued for writing
+        private int pendingCount;
+        private int pendingBytes;
+        private boolean closing;       // close once everything is written
+
+        Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+            line = new byte[64];
+            text = new StringBuilder();
+            pending = new ByteBuffer[4];
+            if (store == null) {
+                setUp(new Game(world, this), "Player " + ++playerCount);
+            }
+        }
+
+        /**
+         * Get a game ready to be played.
+         */
+        private void setUp(Game game, String name) {
+            this.game = game;
+            game.setEventBus(events);
+            game.setMetrics(metrics);
+            game.setWalkBack(walkBack);
+            game.setName(name);
+            if (shared != null) {
+                game.setSharedWorld(shared);
+            } else {
+                game.setRoomIndex(roomIndex);
+            }
+        }
+
+        /**
+         * Welcome the player and start the clock, or ask for the player's
+         * name if their game is kept in the store.
+         */
+        void start() throws IOException {
+            if (game == null) {
+                print("What is your name? ");
+                flush();
+            } else {
+                play();
+            }
+            write();
+        }
+
+        /**
+         * Welcome the player and start the clock.
+         */
+        private void play() {
+            if (wheel != null) {
+                game.startRealTime(wheel, new Runnable() {
+                    public void run() {
+                        low.add(Connection.this);
+                        selector.wakeup();
+                    }
+                }, new Runnable() {
+                    public void run() {
+                        expired.add(Connection.this);
+                        selector.wakeup();
+                    }
+                });
+            }
+            game.printWelcome();
+            prompt();
+        }
+
+        /**
+         * The player has given their name: restore their game, or start a
+         * new one if they haven't played before.
+         */
+        private void open(String name) {
+            try {
+                setUp(store.open(name, InputStream.nullInputStream(), this), name);
+                sessionId = name;
+                play();
+                return;
+            } catch (IllegalArgumentException e) {
+                println("Names are letters, digits, - and _ only.");
+            } catch (IllegalStateException e) {
+                println("Somebody is playing under that name already.");
+            } catch (IOException e) {
+                println("Your game could not be found: " + e.getMessage());
+            }
+            print("What is your name? ");
+            flush();
+        }
+
+        /**
+         * Read what the player sent and play the lines that are complete.
+         */
+        void read() throws IOException {
+            readBuffer.clear();
+            int count = channel.read(readBuffer);
+            if (count < 0) {
+                close();
+                return;
+            }
+            readBuffer.flip();
+            while (readBuffer.hasRemaining() && !closing) {
+                readByte(readBuffer.get() & 0xff);
+            }
+            write();
+        }
+
+        /**
+         * Take one byte of input: telnet commands are skipped, the rest
+         * is put into lines.
+         */
+        private void readByte(int b) throws IOException {
+            switch (telnet) {
+                case 1: // after IAC
+                    if (b == IAC) {
+                        break; // an escaped 255, not text we'd understand
+                    }
+                    telnet = b == SB ? 3 : b >= WILL && b <= DONT ? 2 : 0;
+                    return;
+                case 2: // the option of WILL, WONT, DO or DONT
+                    telnet = 0;
+                    return;
+                case 3: // subnegotiation, until IAC SE
+                    telnet = b == IAC ? 4 : 3;
+                    return;
+                case 4:
+                    telnet = b == SE ? 0 : 3;
+                    return;
+                default:
+                    if (b == IAC) {
+                        telnet = 1;
+                        return;
+                    }
+                    break;
+            }
+            telnet = 0;
+            if (b == '\n') {
+                endLine();
+            } else if (b == '\r' || b == 0) {
+                // telnet ends lines with CR LF or CR NUL
+            } else if (lineLength >= 0) {
+                if (lineLength == MAX_LINE) {
+                    lineLength = -1;
+                } else {
+                    if (lineLength == line.length) {
+                        line = Arrays.copyOf(line, lineLength * 2);
+                    }
+                    line[lineLength++] = (byte) b;
+                }
+            }
+        }
+
+        /**
+         * A line is complete: play it.
+         */
+        private void endLine() throws IOException {
+            if (lineLength < 0) {
+                lineLength = 0;
+                println("That's too long to make sense of.");
+                if (game == null) {
+                    print("What is your name? ");
+                    flush();
+                } else {
+                    prompt();
+                }
+                return;
+            }
+            int length = decode();
+            lineLength = 0;
+            if (game == null) {
+                open(new String(lineChars, 0, length).trim());
+                return;
+            }
+            if (game.processCommands(parser.parseAll(lineChars, 0, length))) {
+                game.stopRealTime();
+                game.setRoomIndex(null);
+                println("Thank you for playing.  Good bye.");
+                flush();
+                closing = true;
+            } else {
+                prompt();
+            }
+        }
+
+        /**
+         * Turn the line's bytes into characters in lineChars.
+         * @return The number of characters.
+         */
+        private int decode() {
+            for (int i = 0; i < lineLength; i++) {
+                if (line[i] < 0) {
+                    // not plain ASCII
+                    String decoded = new String(line, 0, lineLength, StandardCharsets.UTF_8);
+                    decoded.getChars(0, decoded.length(), lineChars, 0);
+                    return decoded.length();
+                }
+                lineChars[i] = (char) line[i];
+            }
+            return lineLength;
+        }
+
+        /**
+         * The player's time is getting low (called on the server thread):
+         * tell them now, not only with their next answer.
+         */
+        void timeLow() throws IOException {
+            if (closing || !channel.isOpen()) {
+                return;
+            }
+            println();
+            println("Time is running low!");
+            println("You have " + game.getTimeLeft() + "s left...");
+            prompt();
+            write();
+        }
+
+        /**
+         * The player's time is up (called on the server thread).
+         */
+        void timeUp() throws IOException {
+            if (closing || !channel.isOpen()) {
+                return;
+            }
+            println();
+            println("Time's up - you lost!");
+            flush();
+            game.setMetrics(null);
+            closing = true;
+            write();
+        }
+
+        /**
+         * Queue the answer together with a new prompt.
+         */
+        private void prompt() {
+            flush();
+            queue(PROMPT.duplicate());
+        }
+
+        public void print(String text) {
+            this.text.append(text);
+        }
+
+        public void println(String text) {
+            this.text.append(text).append('\n');
+        }
+
+        public void println() {
+            text.append('\n');
+        }
+
+        /**
+         * Queue the room's cached description as it is, rather than
+         * encoding it again for every player who walks in.
+         */
+        public void printDescription(Room room) {
+            flush();
+            queue(ByteBuffer.wrap(room.getLongDescriptionBytes()));
+            queue(NEWLINE.duplicate());
+        }
+
+        public void flush() {
+            if (text.length() > 0) {
+                queue(ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8)));
+                text.setLength(0);
+            }
+        }
+
+        private void queue(ByteBuffer buffer) {
+            if (pendingCount == pending.length) {
+                pending = Arrays.copyOf(pending, pendingCount * 2);
+            }
+            pending[pendingCount++] = buffer;
+            pendingBytes += buffer.remaining();
+        }
+
+        /**
+         * Write as much of the queue as the socket takes, in one gathering
+         * write, and wait for the socket to become writable again if
+         * anything is left.
+         */
+        void write() throws IOException {
+            if (pendingCount > 0) {
+                pendingBytes -= (int) channel.write(pending, 0, pendingCount);
+                int done = 0;
+                while (done < pendingCount && !pending[done].hasRemaining()) {
+                    done++;
+                }
+                System.arraycopy(pending, done, pending, 0, pendingCount - done);
+                Arrays.fill(pending, pendingCount - done, pendingCount, null);
+                pendingCount -= done;
+            }
+            if (pendingCount == 0) {
+                if (closing) {
+                    close();
+                    return;
+                }
+                key.interestOps(SelectionKey.OP_READ);
+            } else if (closing || pendingBytes >= MAX_PENDING) {
+                key.interestOps(SelectionKey.OP_WRITE);
+            } else {
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+        }
+
+        void close() {
+            if (game != null) {
+                game.stopRealTime();
+                game.setRoomIndex(null);
+                game.setMetrics(null);
+            }
+            if (sessionId != null) {
+                try {
+                    store.end(sessionId);
+                } catch (IOException e) {
+                    System.err.println("Could not end session " + sessionId + ": " + e);
+                }
+                sessionId = null;
+            }
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // closed anyway
+            }
+        }
+    }
+}
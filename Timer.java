@@ -3,12 +3,24 @@
  * timer  - the current value of the timer
  * update - what to change the update time with
  * low    - when to return that the timer is being low
+ *
+ * By default the timer counts commands: the game updates it once per
+ * command. Once startRealTime is called it counts down in seconds of wall
+ * clock time instead, and a shared TimerWheel tells the game when time is
+ * low and when it has run out. Either way the timer only needs two wheel
+ * timeouts, never one per tick.
  */
  
 public class Timer {
     private int timer;
     private int update;
     private int low;
+    private TimerWheel wheel;        // null while counting commands
+    private long deadline;           // System.nanoTime() when time runs out
+    private Runnable onLow;
+    private Runnable onExpired;
+    private TimerWheel.Timeout lowTimeout;
+    private TimerWheel.Timeout expiredTimeout;
     
     public Timer(int defaultTime, int defaultUpdate, int defaultLow) {
         timer = defaultTime;
@@ -20,21 +32,86 @@ public class Timer {
      * prints out the timer.
      */
     public String toString() {
-        return Integer.toString(timer);
+        return Integer.toString(getTime());
     }
     
     /**
-     * updates the timer
+     * returns the current value of the timer; in real time, the seconds
+     * left, rounded up.
+     */
+    public int getTime() {
+        if (wheel == null) {
+            return timer;
+        }
+        long left = deadline - System.nanoTime();
+        if (left <= 0) {
+            return 0;
+        }
+        return (int) ((left + 999999999L) / 1000000000L);
+    }
+    
+    /**
+     * updates the timer; in real time the clock does that.
      */
     public void updateTimer() {
-        timer += update;
+        if (wheel == null) {
+            timer += update;
+        }
+    }
+    
+    /**
+     * start counting down the time left in seconds of real time.
+     * onLow and onExpired run on the wheel's thread when the time gets low
+     * and when it runs out; either may be null.
+     */
+    public synchronized void startRealTime(TimerWheel wheel, Runnable onLow, Runnable onExpired) {
+        int time = getTime();
+        stop();
+        this.wheel = wheel;
+        this.onLow = onLow;
+        this.onExpired = onExpired;
+        setTime(time);
+    }
+    
+    /**
+     * stop counting real time; the timer keeps the time that was left.
+     */
+    public synchronized void stop() {
+        if (wheel == null) {
+            return;
+        }
+        timer = getTime();
+        cancelTimeouts();
+        wheel = null;
     }
     
     /**
      * alter timer data
      */
-    public void setTime(int time) {
+    public synchronized void setTime(int time) {
         timer = time;
+        if (wheel == null) {
+            return;
+        }
+        cancelTimeouts();
+        deadline = System.nanoTime() + time * 1000000000L;
+        if (onLow != null && time > low) {
+            lowTimeout = wheel.schedule((time - low) * 1000L, onLow);
+        }
+        if (onExpired != null) {
+            expiredTimeout = wheel.schedule(time * 1000L, onExpired);
+        }
+    }
+    
+    private void cancelTimeouts() {
+        if (lowTimeout != null) {
+            lowTimeout.cancel();
+            lowTimeout = null;
+        }
+        if (expiredTimeout != null) {
+            expiredTimeout.cancel();
+            expiredTimeout = null;
+        }
     }
     public void setUpdate(int update) {
         this.update = update;
@@ -47,7 +124,7 @@ public class Timer {
      * check if the timer is low
      */
     public boolean isLow() {
-        if (timer <= low) {
+        if (getTime() <= low) {
             return true;
         }
         return false;
@@ -57,7 +134,7 @@ public class Timer {
      * check if the timer reached zero
      */
     public boolean hasExpired() {
-        if (timer <= 0) {
+        if (getTime() <= 0) {
             return true;
         }
         return false;
@@ -0,0 +1,232 @@
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * A hierarchical timer wheel: runs tasks after a delay, for any number of
+ * game sessions, on one thread. Time is cut into ticks. The lowest level of
+ * the wheel has a slot for each of the next 64 ticks, the next level a slot
+ * for each of the next 64 rounds of the lowest level, and so on. Adding or
+ * cancelling a timeout takes constant time, and a timeout costs one small
+ * object until it fires, however many there are.
+ *
+ * Timeouts may be added and cancelled from any thread; they are handed to
+ * the wheel thread through lock-free queues. The tasks run on the wheel
+ * thread and must be quick: hand anything slow on to another thread.
+ *
+ * @author  Fredrik Ljungdahl
+ * @version 2026.10.18
+ */
+
+public class TimerWheel {
+    private static final int LEVELS = 4;
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final long MAX_DELAY_TICKS = (1L << (LEVELS * SLOT_BITS)) - 1;
+
+    private long tickNanos;
+    private long startNanos;
+    private long currentTick;         // only touched by the wheel thread
+    private Timeout[][] slots;        // heads of the slot lists, by level
+    private ConcurrentLinkedQueue<Timeout> added;
+    private ConcurrentLinkedQueue<Timeout> cancelled;
+    private Thread thread;
+    private volatile boolean running;
+
+    /**
+     * Create a timer wheel and start its thread.
+     * @param tickMillis The length of one tick, the precision of the wheel.
+     */
+    public TimerWheel(long tickMillis) {
+        tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        slots = new Timeout[LEVELS][SLOTS];
+        added = new ConcurrentLinkedQueue<Timeout>();
+        cancelled = new ConcurrentLinkedQueue<Timeout>();
+        startNanos = System.nanoTime();
+        running = true;
+        thread = new Thread(new Runnable() {
+            public void run() {
+                loop();
+            }
+        }, "timer-wheel");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Run a task after a delay. Delays are rounded up to whole ticks.
+     * @param delayMillis The delay.
+     * @param task        The task, run on the wheel thread.
+     * @return A handle to cancel the timeout with.
+     */
+    public Timeout schedule(long delayMillis, Runnable task) {
+        long delay = TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis));
+        long deadline = (System.nanoTime() - startNanos + delay + tickNanos - 1) / tickNanos;
+        Timeout timeout = new Timeout(this, deadline, task);
+        added.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Stop the wheel thread. Timeouts that haven't fired never will.
+     */
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * The wheel thread: wait for the next tick, then fire what is due.
+     */
+    private void loop() {
+        while (running) {
+            long nextTickNanos = startNanos + (currentTick + 1) * tickNanos;
+            long wait = nextTickNanos - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(this, wait);
+                continue;
+            }
+            currentTick++;
+            cascade();
+            drainQueues();
+            fire(slots[0][(int) (currentTick & SLOT_MASK)]);
+            slots[0][(int) (currentTick & SLOT_MASK)] = null;
+        }
+    }
+
+    /**
+     * Put in the timeouts added and take out the ones cancelled since the
+     * last tick.
+     */
+    private void drainQueues() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            unlink(timeout);
+        }
+        while ((timeout = added.poll()) != null) {
+            if (!timeout.cancelled) {
+                insert(timeout);
+            }
+        }
+    }
+
+    /**
+     * When a level has gone round once, move the timeouts of the next
+     * slot of the level above down to where they now belong.
+     */
+    private void cascade() {
+        for (int level = 1; level < LEVELS; level++) {
+            if ((currentTick & ((1L << (level * SLOT_BITS)) - 1)) != 0) {
+                break;
+            }
+            int slot = (int) ((currentTick >>> (level * SLOT_BITS)) & SLOT_MASK);
+            Timeout timeout = slots[level][slot];
+            slots[level][slot] = null;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                timeout.prev = null;
+                timeout.next = null;
+                insert(timeout);
+                timeout = next;
+            }
+        }
+    }
+
+    /**
+     * Run the tasks of a slot list.
+     */
+    private void fire(Timeout timeout) {
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.level = -1;
+            if (!timeout.cancelled) {
+                try {
+                    timeout.task.run();
+                } catch (RuntimeException e) {
+                    System.err.println("Timer task failed: " + e);
+                }
+            }
+            timeout = next;
+        }
+    }
+
+    /**
+     * Put a timeout in the slot its deadline belongs to.
+     */
+    private void insert(Timeout timeout) {
+        // anything due already goes in the slot fired this tick
+        long delay = Math.max(0, timeout.deadline - currentTick);
+        delay = Math.min(delay, MAX_DELAY_TICKS);
+        long tick = currentTick + delay;
+        int level = 0;
+        while (delay >= SLOTS && level < LEVELS - 1) {
+            delay >>>= SLOT_BITS;
+            level++;
+        }
+        int slot = (int) ((tick >>> (level * SLOT_BITS)) & SLOT_MASK);
+        timeout.level = level;
+        timeout.slot = slot;
+        timeout.next = slots[level][slot];
+        if (timeout.next != null) {
+            timeout.next.prev = timeout;
+        }
+        slots[level][slot] = timeout;
+    }
+
+    /**
+     * Take a timeout out of its slot list, if it is in one.
+     */
+    private void unlink(Timeout timeout) {
+        if (timeout.level < 0) {
+            return;
+        }
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else if (slots[timeout.level][timeout.slot] == timeout) {
+            slots[timeout.level][timeout.slot] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.level = -1;
+    }
+
+    /**
+     * A task waiting in the wheel.
+     */
+    public static class Timeout {
+        private TimerWheel wheel;
+        private long deadline;       // in ticks
+        private Runnable task;
+        private volatile boolean cancelled;
+        // position in the wheel, only touched by the wheel thread
+        private Timeout prev;
+        private Timeout next;
+        private int level = -1;
+        private int slot;
+
+        Timeout(TimerWheel wheel, long deadline, Runnable task) {
+            this.wheel = wheel;
+            this.deadline = deadline;
+            this.task = task;
+        }
+
+        /**
+         * Make sure the task is not run, if it hasn't been already.
+         */
+        public void cancel() {
+            if (!cancelled) {
+                cancelled = true;
+                wheel.cancelled.add(this);
+            }
+        }
+    }
+}
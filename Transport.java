@@ -0,0 +1,48 @@
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * A Transport carries messages between the nodes of a sharded game: the
+ * shards and the gateway. Nodes are numbered from 0. A message is an
+ * array of bytes; the transport doesn't look inside.
+ *
+ * Messages from one node to another arrive in the order they were sent,
+ * and every node gets its messages one at a time, so a node's state needs
+ * no locking. LocalTransport keeps all nodes in one process;
+ * SocketTransport connects nodes over TCP.
+ *
+ * @author  Fredrik Ljungdahl
+ * @version 2026.10.18
+ */
+
+public interface Transport {
+    /**
+     * Something that receives the messages for a node.
+     */
+    interface Receiver {
+        /**
+         * Called for every message sent to the node.
+         * @param message The message.
+         */
+        void receive(byte[] message);
+    }
+
+    /**
+     * Start receiving the messages for a node in this process.
+     * @param node     The node.
+     * @param receiver Where its messages go.
+     */
+    void register(int node, Receiver receiver);
+
+    /**
+     * Send a message to a node. Doesn't wait for it to be received.
+     * @param node    The node.
+     * @param message The message; not to be changed after sending.
+     */
+    void send(int node, byte[] message);
+
+    /**
+     * Stop delivering messages and let go of all connections.
+     */
+    void close();
+}
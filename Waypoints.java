@@ -0,0 +1,121 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * The waypoints are the places a player has put in their memory with
+ * "mark", so they can go back there with "back". Every waypoint has a name;
+ * a plain "mark" uses the empty name.
+ *
+ * A player can remember at most MAX_WAYPOINTS places. They are kept in a
+ * small open-addressing table, never more than half full, so finding a
+ * name takes one or two probes whatever the player has marked. The table
+ * is made on the first "mark", so players who never mark anything don't
+ * pay for it.
+ *
+ * @author  Fredrik Ljungdahl
+ * @version 2026.10.18
+ */
+
+public class Waypoints {
+    public static final int MAX_WAYPOINTS = 8;
+    private static final int CAPACITY = 16;  // a power of two, twice MAX_WAYPOINTS
+
+    private String[] names;  // null until the first mark
+    private int[] rooms;     // the room id of each name
+    private int size;
+
+    /**
+     * @return The id of the room remembered under a name, or -1 if there
+     * is none.
+     */
+    public int get(String name) {
+        if (names == null) {
+            return -1;
+        }
+        int slot = find(name);
+        return names[slot] == null ? -1 : rooms[slot];
+    }
+
+    /**
+     * Remember a room under a name, replacing the room it had before.
+     * @param name The name.
+     * @param room The room's id.
+     * @return false if the name is new and MAX_WAYPOINTS rooms are
+     * remembered already.
+     */
+    public boolean put(String name, int room) {
+        if (names == null) {
+            names = new String[CAPACITY];
+            rooms = new int[CAPACITY];
+        }
+        int slot = find(name);
+        if (names[slot] == null) {
+            if (size == MAX_WAYPOINTS) {
+                return false;
+            }
+            names[slot] = name;
+            size++;
+        }
+        rooms[slot] = room;
+        return true;
+    }
+
+    /**
+     * @return The number of rooms remembered.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The slot holding a name, or the empty slot where it would go.
+     */
+    private int find(String name) {
+        int hash = name.hashCode();
+        int slot = (hash ^ (hash >>> 16)) & (CAPACITY - 1);
+        while (names[slot] != null && !names[slot].equals(name)) {
+            slot = (slot + 1) & (CAPACITY - 1);
+        }
+        return slot;
+    }
+
+    /**
+     * Write the waypoints to a stream, for a snapshot of the game.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeByte(size);
+        for (int slot = 0; size > 0 && slot < CAPACITY; slot++) {
+            if (names[slot] != null) {
+                out.writeUTF(names[slot]);
+                out.writeInt(rooms[slot]);
+            }
+        }
+    }
+
+    /**
+     * Replace the waypoints with those read from a stream, as written by
+     * writeTo.
+     * @param roomCount The number of rooms in the world.
+     */
+    public void readFrom(DataInput in, int roomCount) throws IOException {
+        int count = in.readByte();
+        if (count < 0 || count > MAX_WAYPOINTS) {
+            throw new IOException("Snapshot doesn't fit this world");
+        }
+        names = null;
+        rooms = null;
+        size = 0;
+        for (int i = 0; i < count; i++) {
+            String name = in.readUTF();
+            int room = in.readInt();
+            if (room < 0 || room >= roomCount) {
+                throw new IOException("Snapshot doesn't fit this world");
+            }
+            put(name, room);
+        }
+    }
+}
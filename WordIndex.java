@@ -0,0 +1,106 @@
+import java.util.Arrays;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * A word index finds the rooms whose description holds a word without
+ * looking at any other room. It is made by reading every description
+ * once; after that a lookup is a binary search over the words' hashes.
+ * Only hashes and room ids are kept, no strings, so the index takes about
+ * eight bytes per word of every description, and different words whose
+ * hashes happen to be equal give the same rooms: the caller checks the
+ * descriptions of the rooms found (see World.findRooms).
+ *
+ * Words are the parts of a description between spaces, compared without
+ * regard to case as String.equalsIgnoreCase does.
+ *
+ * @author  Fredrik Ljungdahl
+ * @version 2026.10.18
+ */
+
+public class WordIndex {
+    private static final int[] NONE = new int[0];
+
+    private int[] hashes;    // the words' hashes, sorted, each once
+    private int[] start;     // rooms of hashes[i] are rooms[start[i]] .. rooms[start[i + 1] - 1]
+    private int[] rooms;
+
+    /**
+     * Index the rooms of a world by the words of their descriptions.
+     * @param world The world. In a lazily loaded world the descriptions
+     *              are read from the file, without loading the rooms.
+     */
+    public WordIndex(World world) {
+        RoomCache cache = world.getRoomCache();
+        int roomCount = cache != null ? cache.getRoomCount() : world.getRooms().size();
+
+        // one entry per word and room: the hash above, the room id below
+        long[] entries = new long[Math.max(16, roomCount * 2)];
+        int count = 0;
+        for (int id = 0; id < roomCount; id++) {
+            String description = cache != null ? cache.getDescription(id)
+                : world.getRoom(id).getShortDescription();
+            int from = 0;
+            while (from <= description.length()) {
+                int to = description.indexOf(' ', from);
+                if (to < 0) {
+                    to = description.length();
+                }
+                if (count == entries.length) {
+                    entries = Arrays.copyOf(entries, count * 2);
+                }
+                entries[count++] = (long) hash(description, from, to) << 32 | id;
+                from = to + 1;
+            }
+        }
+        Arrays.sort(entries, 0, count);
+
+        hashes = new int[count];
+        start = new int[count + 1];
+        rooms = new int[count];
+        int words = 0;
+        int found = 0;
+        for (int i = 0; i < count; i++) {
+            if (i > 0 && entries[i] == entries[i - 1]) {
+                continue;   // the word twice in one description
+            }
+            int hash = (int) (entries[i] >> 32);
+            if (words == 0 || hashes[words - 1] != hash) {
+                hashes[words] = hash;
+                start[words++] = found;
+            }
+            rooms[found++] = (int) entries[i];
+        }
+        start[words] = found;
+        hashes = Arrays.copyOf(hashes, words);
+        start = Arrays.copyOf(start, words + 1);
+        rooms = Arrays.copyOf(rooms, found);
+    }
+
+    /**
+     * Find the rooms that may hold a word: every room whose description
+     * holds it, and maybe others whose words hash the same.
+     * @param word The word, in any case.
+     * @return The ids of the rooms, in ascending order.
+     */
+    public int[] find(String word) {
+        int i = Arrays.binarySearch(hashes, hash(word, 0, word.length()));
+        if (i < 0) {
+            return NONE;
+        }
+        return Arrays.copyOfRange(rooms, start[i], start[i + 1]);
+    }
+
+    /**
+     * @return The hash of part of a string, the same for every way of
+     * writing it that equalsIgnoreCase takes to be equal.
+     */
+    static int hash(String text, int from, int to) {
+        int hash = 0;
+        for (int i = from; i < to; i++) {
+            hash = 31 * hash + Character.toLowerCase(Character.toUpperCase(text.charAt(i)));
+        }
+        return hash;
+    }
+}
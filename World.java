@@ -0,0 +1,283 @@
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * A World holds the room graph of the game. It is built once and can be
+ * shared by any number of game sessions: everything that changes while a
+ * player is playing (current room, keys, timer, unlocked doors) is kept in
+ * the Game itself, never in the rooms. Once the world is built the rooms
+ * must not be changed any more.
+ *
+ * A world loaded lazily (see WorldLoader) holds only some of its rooms in
+ * memory, in a RoomCache, and loads the others when they are asked for.
+ * Such a room may be evicted and loaded again as a new Room object, so
+ * rooms are compared by id rather than by reference. Finding rooms by
+ * name goes through a WordIndex, made by reading every description from
+ * the file once; only the matching rooms are loaded into the cache. The
+ * Pathfinder, RoomIndex, ShardMap and Simulation
+ * go through every room once when they are made and keep tables with an
+ * entry or more per room; a lazy world only stays small without them.
+ *
+ * @author  Fredrik Ljungdahl
+ * @version 2026.10.18
+ */
+
+public class World {
+    private Room startRoom;
+    private List<Room> rooms;
+    private int exitCount;
+    private int keyCount;
+    private RoomCache cache;                // null unless loaded lazily
+    private volatile Pathfinder pathfinder; // made when first needed
+    private volatile WordIndex words;       // made when first needed
+
+    /**
+     * Create the default world.
+     */
+    public World() {
+        rooms = new ArrayList<Room>();
+        createRooms();
+        numberRooms();
+        numberExits();
+        numberKeys();
+    }
+
+    /**
+     * Create a world from rooms that have been built elsewhere, for
+     * example by the WorldLoader. The rooms must not be changed after this.
+     * @param rooms     All rooms of the world.
+     * @param startRoom The room every new game starts in.
+     */
+    public World(List<Room> rooms, Room startRoom) {
+        this.rooms = new ArrayList<Room>(rooms);
+        this.startRoom = startRoom;
+        numberRooms();
+        numberExits();
+        numberKeys();
+    }
+
+    /**
+     * Create a world whose rooms are loaded when they are asked for. The
+     * rooms, exits and keys must have their ids already.
+     * @param cache     The cache holding the rooms.
+     * @param startRoom The id of the room every new game starts in.
+     * @param exitCount The number of exits in the world.
+     * @param keyCount  The number of keys in the world.
+     */
+    World(final RoomCache cache, int startRoom, int exitCount, int keyCount) {
+        this.cache = cache;
+        this.exitCount = exitCount;
+        this.keyCount = keyCount;
+        rooms = new AbstractList<Room>() {
+            public Room get(int id) {
+                return cache.get(id);
+            }
+
+            public int size() {
+                return cache.getRoomCount();
+            }
+        };
+        this.startRoom = rooms.get(startRoom);
+    }
+
+    /**
+     * Create all the rooms and link their exits together.
+     */
+    private void createRooms() {
+        Room outside, theater, pub, lab, office, classroom;
+
+        Key officeKey = new Key("Office");
+
+        // create the rooms
+        outside = new Room("outside the main entrance of the university");
+        theater = new Room("in a lecture theater", officeKey);
+        pub = new Room("in the campus pub");
+        lab = new Room("in a computing lab");
+        office = new Room("in the computing admin office");
+        classroom = new Room("in a plain classroom");
+        Collections.addAll(rooms, outside, theater, pub, lab, office, classroom);
+
+        // initialise room exits
+        outside.setExit(Direction.EAST, theater);
+        outside.setExit(Direction.SOUTH, classroom);
+        outside.setExit(Direction.WEST, pub);
+
+        theater.setExit(Direction.WEST, outside);
+        theater.setExit(Direction.SOUTH, lab);
+
+        pub.setExit(Direction.EAST, outside);
+
+        classroom.setExit(Direction.NORTH, outside);
+        classroom.setExit(Direction.EAST, lab);
+
+        lab.setExit(Direction.NORTH, theater, ExitState.TRAPDOOR);
+        lab.setExit(Direction.EAST, office, officeKey);
+        lab.setExit(Direction.WEST, classroom);
+
+        office.setExit(Direction.WEST, lab);
+
+        startRoom = outside;  // start game outside
+    }
+
+    /**
+     * Give every room its index in the room list as id.
+     */
+    private void numberRooms() {
+        for (int i = 0; i < rooms.size(); i++) {
+            rooms.get(i).setId(i);
+        }
+    }
+
+    /**
+     * Give every exit in the world its own id, so that per-player exit
+     * states can be kept in a bitset. See ExitStates.
+     */
+    private void numberExits() {
+        exitCount = 0;
+        for (Room room : rooms) {
+            exitCount = room.numberExits(exitCount);
+        }
+    }
+
+    /**
+     * Give every key in the world its own id, so that the keys a player
+     * holds can be kept in a bitset. See KeyRing.
+     */
+    private void numberKeys() {
+        keyCount = 0;
+        for (Room room : rooms) {
+            numberKey(room.getKey());
+            for (int d = 0; d < Direction.count(); d++) {
+                numberKey(room.getExitKey(Direction.get(d)));
+            }
+        }
+    }
+
+    private void numberKey(Key key) {
+        if (key != null && key.getId() < 0) {
+            key.setId(keyCount++);
+        }
+    }
+
+    /**
+     * @return The number of keys in the world. Key ids range from 0 to
+     * this number minus one.
+     */
+    public int getKeyCount() {
+        return keyCount;
+    }
+
+    /**
+     * @return The number of exits in the world. Exit ids range from 0 to
+     * this number minus one.
+     */
+    public int getExitCount() {
+        return exitCount;
+    }
+
+    /**
+     * @return All rooms of the world. In a lazily loaded world every room
+     * is loaded as it is got from the list.
+     */
+    public List<Room> getRooms() {
+        return Collections.unmodifiableList(rooms);
+    }
+
+    /**
+     * @return The room with the given id.
+     */
+    public Room getRoom(int id) {
+        return rooms.get(id);
+    }
+
+    /**
+     * Find the rooms whose description contains a word, for example
+     * "pub" for the room "in the campus pub".
+     * @param word The word to look for, in any case.
+     * @return The rooms, in order of their ids.
+     */
+    public List<Room> findRooms(String word) {
+        ArrayList<Room> found = new ArrayList<Room>();
+        for (int id : getWordIndex().find(word)) {
+            // the index may give rooms whose words only hash the same
+            String description = cache != null ? cache.getDescription(id)
+                : rooms.get(id).getShortDescription();
+            if (describes(description, word)) {
+                found.add(rooms.get(id));
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @return true if a word is part of a room description.
+     */
+    private static boolean describes(String description, String word) {
+        int from = 0;
+        while (from <= description.length()) {
+            int to = description.indexOf(' ', from);
+            if (to < 0) {
+                to = description.length();
+            }
+            if (to - from == word.length() && description.regionMatches(true, from, word, 0, to - from)) {
+                return true;
+            }
+            from = to + 1;
+        }
+        return false;
+    }
+
+    /**
+     * @return The index of the words in the room descriptions.
+     */
+    private WordIndex getWordIndex() {
+        WordIndex index = words;
+        if (index == null) {
+            synchronized (this) {
+                index = words;
+                if (index == null) {
+                    index = new WordIndex(this);
+                    words = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @return The pathfinder for routes through this world.
+     */
+    public Pathfinder getPathfinder() {
+        Pathfinder finder = pathfinder;
+        if (finder == null) {
+            synchronized (this) {
+                finder = pathfinder;
+                if (finder == null) {
+                    finder = new Pathfinder(this);
+                    pathfinder = finder;
+                }
+            }
+        }
+        return finder;
+    }
+
+    /**
+     * @return The cache holding the rooms, or null if the world isn't
+     * loaded lazily.
+     */
+    public RoomCache getRoomCache() {
+        return cache;
+    }
+
+    /**
+     * @return The room every new game starts in.
+     */
+    public Room getStartRoom() {
+        return startRoom;
+    }
+}
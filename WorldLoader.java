@@ -0,0 +1,552 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * The world loader builds a World from a file instead of from code. There
+ * are two forms of world files.
+ *
+ * The text form is meant for writing worlds by hand. Every line is one of
+ *
+ *   room  <name> <description>
+ *   key   <name> <room it lies in> <label>
+ *   exit  <room> <direction> <room> [trapdoor | locked <key>]
+ *   start <room>
+ *
+ * Empty lines and lines starting with # are ignored. See default.world.
+ *
+ * The binary form is compiled from the text form and is what large worlds
+ * should be shipped as. It is memory-mapped and read with plain index
+ * arithmetic, without any parsing or lookups by name:
+ *
+ *   int  magic, version, keyCount, roomCount, exitCount, startRoom
+ *   keyCount  x (int labelOffset, int labelLength)
+ *   roomCount x (int descriptionOffset, int descriptionLength, int key)
+ *   exitCount x (int from, int to, int direction, int state, int key)
+ *   UTF-8 text the offsets point into
+ *
+ * Rooms and keys are referred to by index, -1 meaning none. The exits are
+ * sorted by the room they leave from.
+ *
+ * A binary world can also be loaded lazily: only the keys are read up
+ * front, along with an index telling where the exits of each room start,
+ * and rooms are read from the mapped file into a RoomCache when they are
+ * asked for. That takes four bytes per room plus the cached rooms, so
+ * worlds far bigger than the heap can be played.
+ *
+ * Usage: java WorldLoader compile <text file> <binary file>
+ *        java WorldLoader load <world file> [cached rooms]
+ *
+ * @author  Fredrik Ljungdahl
+ * @version 2026.10.18
+ */
+
+public class WorldLoader {
+    private static final int MAGIC = 0x5A55554C; // "ZUUL"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 6 * 4;
+    private static final int KEY_SIZE = 2 * 4;
+    private static final int ROOM_SIZE = 3 * 4;
+    private static final int EXIT_SIZE = 5 * 4;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 3 && args[0].equals("compile")) {
+            World world = loadText(Paths.get(args[1]));
+            writeBinary(world, Paths.get(args[2]));
+        } else if ((args.length == 2 || args.length == 3) && args[0].equals("load")) {
+            long start = System.nanoTime();
+            World world = args.length == 3 ? load(Paths.get(args[1]), Integer.parseInt(args[2]))
+                : load(Paths.get(args[1]));
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("%d rooms, %d exits loaded in %.1f ms%n",
+                world.getRooms().size(), world.getExitCount(), elapsed / 1e6);
+            if (world.getRoomCache() != null) {
+                System.out.println(world.getRoomCache());
+            }
+        } else {
+            System.err.println("Usage: java WorldLoader compile <text file> <binary file>");
+            System.err.println("       java WorldLoader load <world file> [cached rooms]");
+            System.exit(2);
+        }
+    }
+
+    /**
+     * Load a world from a file in either form. Binary files are recognised
+     * by their first bytes.
+     * @param file The world file.
+     * @return The world.
+     */
+    public static World load(Path file) throws IOException {
+        return isBinary(file) ? loadBinary(file) : loadText(file);
+    }
+
+    /**
+     * Load a world from a file in either form, keeping at most the given
+     * number of rooms in memory if it is binary.
+     * @param file      The world file.
+     * @param cacheSize The most rooms to keep in memory.
+     * @return The world.
+     */
+    public static World load(Path file, int cacheSize) throws IOException {
+        return isBinary(file) ? loadLazy(file, cacheSize) : loadText(file);
+    }
+
+    /**
+     * @return true if a world file is in the binary form, going by its
+     * first bytes.
+     */
+    private static boolean isBinary(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer head = ByteBuffer.allocate(4);
+            channel.read(head, 0);
+            return head.position() == 4 && head.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * Load a world from its text form.
+     * @param file The text file.
+     * @return The world.
+     */
+    public static World loadText(Path file) throws IOException {
+        // everything is collected first, so lines may come in any order
+        ArrayList<String[]> roomLines = new ArrayList<String[]>();
+        ArrayList<String[]> keyLines = new ArrayList<String[]>();
+        ArrayList<String[]> exitLines = new ArrayList<String[]>();
+        String startName = null;
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] words = line.split("\\s+", 4);
+                String where = file + ":" + lineNumber + ": ";
+                switch (words[0]) {
+                    case "room":
+                        if (words.length < 3) {
+                            throw new IOException(where + "expected: room <name> <description>");
+                        }
+                        roomLines.add(line.split("\\s+", 3));
+                        break;
+
+                    case "key":
+                        if (words.length < 4) {
+                            throw new IOException(where + "expected: key <name> <room> <label>");
+                        }
+                        keyLines.add(words);
+                        break;
+
+                    case "exit":
+                        String[] exit = line.split("\\s+");
+                        if (exit.length != 4 && !(exit.length == 5 && exit[4].equals("trapdoor"))
+                                && !(exit.length == 6 && exit[4].equals("locked"))) {
+                            throw new IOException(where
+                                + "expected: exit <room> <direction> <room> [trapdoor | locked <key>]");
+                        }
+                        exitLines.add(exit);
+                        break;
+
+                    case "start":
+                        if (words.length != 2) {
+                            throw new IOException(where + "expected: start <room>");
+                        }
+                        startName = words[1];
+                        break;
+
+                    default:
+                        throw new IOException(where + "unknown line type \"" + words[0] + "\"");
+                }
+            }
+        }
+
+        HashMap<String, Key> keys = new HashMap<String, Key>();
+        HashMap<String, Key> keysByRoom = new HashMap<String, Key>();
+        for (String[] words : keyLines) {
+            Key key = new Key(words[3]);
+            if (keys.put(words[1], key) != null) {
+                throw new IOException(file + ": key \"" + words[1] + "\" is defined twice");
+            }
+            if (keysByRoom.put(words[2], key) != null) {
+                throw new IOException(file + ": the key in room \"" + words[2] + "\" is defined twice");
+            }
+        }
+
+        HashMap<String, Room> rooms = new HashMap<String, Room>();
+        ArrayList<Room> roomList = new ArrayList<Room>();
+        for (String[] words : roomLines) {
+            Room room = new Room(words[2], keysByRoom.get(words[1]));
+            if (rooms.put(words[1], room) != null) {
+                throw new IOException(file + ": room \"" + words[1] + "\" is defined twice");
+            }
+            roomList.add(room);
+        }
+        for (String roomName : keysByRoom.keySet()) {
+            lookup(rooms, roomName, file, "room");
+        }
+
+        for (String[] words : exitLines) {
+            Room from = lookup(rooms, words[1], file, "room");
+            Room to = lookup(rooms, words[3], file, "room");
+            Direction direction = Direction.fromString(words[2]);
+            if (direction == null) {
+                throw new IOException(file + ": unknown direction \"" + words[2] + "\"");
+            }
+            if (from.getExit(direction) != null) {
+                throw new IOException(file + ": exit " + direction + " of room \"" + words[1]
+                    + "\" is defined twice");
+            }
+            if (words.length == 6) {
+                from.setExit(direction, to, lookup(keys, words[5], file, "key"));
+            } else if (words.length == 5) {
+                from.setExit(direction, to, ExitState.TRAPDOOR);
+            } else {
+                from.setExit(direction, to);
+            }
+        }
+
+        if (startName == null) {
+            throw new IOException(file + ": no start room given");
+        }
+        return new World(roomList, lookup(rooms, startName, file, "room"));
+    }
+
+    /**
+     * Look up something by name, complaining if it isn't there.
+     */
+    private static <T> T lookup(HashMap<String, T> map, String name, Path file, String what)
+            throws IOException {
+        T thing = map.get(name);
+        if (thing == null) {
+            throw new IOException(file + ": unknown " + what + " \"" + name + "\"");
+        }
+        return thing;
+    }
+
+    /**
+     * Load a world from its binary form.
+     * @param file The binary file.
+     * @return The world.
+     */
+    public static World loadBinary(Path file) throws IOException {
+        ByteBuffer data = mapBinary(file);
+        int keyCount = data.getInt(8);
+        int roomCount = data.getInt(12);
+        int exitCount = data.getInt(16);
+        int startRoom = data.getInt(20);
+        int keyTable = HEADER_SIZE;
+        int roomTable = keyTable + keyCount * KEY_SIZE;
+        int exitTable = roomTable + roomCount * ROOM_SIZE;
+        int text = exitTable + exitCount * EXIT_SIZE;
+
+        try {
+            Key[] keys = new Key[keyCount];
+            for (int i = 0; i < keyCount; i++) {
+                int pos = keyTable + i * KEY_SIZE;
+                keys[i] = new Key(string(data, text + data.getInt(pos), data.getInt(pos + 4)));
+            }
+
+            ArrayList<Room> rooms = new ArrayList<Room>(roomCount);
+            for (int i = 0; i < roomCount; i++) {
+                int pos = roomTable + i * ROOM_SIZE;
+                String description = string(data, text + data.getInt(pos), data.getInt(pos + 4));
+                int key = data.getInt(pos + 8);
+                rooms.add(new Room(description, key < 0 ? null : keys[key]));
+            }
+
+            ExitState[] states = ExitState.values();
+            for (int i = 0; i < exitCount; i++) {
+                int pos = exitTable + i * EXIT_SIZE;
+                Room from = rooms.get(data.getInt(pos));
+                Room to = rooms.get(data.getInt(pos + 4));
+                Direction direction = Direction.get(data.getInt(pos + 8));
+                ExitState state = states[data.getInt(pos + 12)];
+                int key = data.getInt(pos + 16);
+                if (key >= 0) {
+                    from.setExit(direction, to, keys[key]);
+                } else {
+                    from.setExit(direction, to, state);
+                }
+            }
+            return new World(rooms, rooms.get(startRoom));
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException(file + ": corrupt world file", e);
+        }
+    }
+
+    /**
+     * Load a world from its binary form lazily, reading rooms only when
+     * they are asked for.
+     * @param file      The binary file.
+     * @param cacheSize The most rooms to keep in memory.
+     * @return The world.
+     */
+    public static World loadLazy(Path file, int cacheSize) throws IOException {
+        ByteBuffer data = mapBinary(file);
+        int keyCount = data.getInt(8);
+        int roomCount = data.getInt(12);
+        int exitCount = data.getInt(16);
+        int startRoom = data.getInt(20);
+        BinaryRooms rooms = new BinaryRooms(data, keyCount, roomCount, exitCount);
+        try {
+            for (int i = 0; i < keyCount; i++) {
+                int pos = rooms.keyTable + i * KEY_SIZE;
+                rooms.keys[i] = new Key(string(data, rooms.text + data.getInt(pos), data.getInt(pos + 4)));
+                rooms.keys[i].setId(i);
+            }
+            // check everything a room will be read from, and index the exits
+            for (int i = 0; i < roomCount; i++) {
+                int pos = rooms.roomTable + i * ROOM_SIZE;
+                data.get(rooms.text + data.getInt(pos) + data.getInt(pos + 4) - 1);
+                check(data.getInt(pos + 8), -1, keyCount, file);
+            }
+            int previous = 0;
+            for (int i = 0; i < exitCount; i++) {
+                int pos = rooms.exitTable + i * EXIT_SIZE;
+                int from = check(data.getInt(pos), 0, roomCount, file);
+                if (from < previous) {
+                    throw new IOException(file + ": exits not sorted by room, compile it again");
+                }
+                previous = from;
+                rooms.exitStart[from + 1]++;
+                check(data.getInt(pos + 4), 0, roomCount, file);
+                check(data.getInt(pos + 8), 0, Direction.count(), file);
+                check(data.getInt(pos + 12), 0, ExitState.values().length, file);
+                check(data.getInt(pos + 16), -1, keyCount, file);
+            }
+            check(startRoom, 0, roomCount, file);
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException(file + ": corrupt world file", e);
+        }
+        for (int i = 0; i < roomCount; i++) {
+            rooms.exitStart[i + 1] += rooms.exitStart[i];
+        }
+        rooms.cache = new RoomCache(rooms, roomCount, cacheSize);
+        return new World(rooms.cache, startRoom, exitCount, keyCount);
+    }
+
+    /**
+     * @return A number read from a world file, if it lies from min to
+     * max - 1.
+     */
+    private static int check(int number, int min, int max, Path file) throws IOException {
+        if (number < min || number >= max) {
+            throw new IOException(file + ": corrupt world file");
+        }
+        return number;
+    }
+
+    /**
+     * Map a binary world file and check its header.
+     */
+    private static ByteBuffer mapBinary(Path file) throws IOException {
+        ByteBuffer data;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (data.limit() < HEADER_SIZE || data.getInt(0) != MAGIC) {
+            throw new IOException(file + ": not a binary world file");
+        }
+        if (data.getInt(4) != VERSION) {
+            throw new IOException(file + ": unsupported world file version " + data.getInt(4));
+        }
+        return data;
+    }
+
+    /**
+     * Reads the rooms of a lazily loaded world from the mapped file. The
+     * mapping is only read with absolute gets, so any number of threads
+     * may load rooms at once.
+     */
+    private static class BinaryRooms implements RoomCache.Loader {
+        private static final ExitState[] STATES = ExitState.values();
+
+        private ByteBuffer data;
+        private int keyTable;
+        private int roomTable;
+        private int exitTable;
+        private int text;
+        private Key[] keys;
+        // the exits of room r are entries exitStart[r] to exitStart[r + 1] - 1
+        private int[] exitStart;
+        private RoomCache cache;
+
+        BinaryRooms(ByteBuffer data, int keyCount, int roomCount, int exitCount) {
+            this.data = data;
+            keyTable = HEADER_SIZE;
+            roomTable = keyTable + keyCount * KEY_SIZE;
+            exitTable = roomTable + roomCount * ROOM_SIZE;
+            text = exitTable + exitCount * EXIT_SIZE;
+            keys = new Key[keyCount];
+            exitStart = new int[roomCount + 1];
+        }
+
+        public String getDescription(int id) {
+            int pos = roomTable + id * ROOM_SIZE;
+            return string(data, text + data.getInt(pos), data.getInt(pos + 4));
+        }
+
+        public Room load(int id) {
+            String description = getDescription(id);
+            int pos = roomTable + id * ROOM_SIZE;
+            int key = data.getInt(pos + 8);
+            Room room = new Room(description, key < 0 ? null : keys[key]);
+            room.setId(id);
+            for (int e = exitStart[id]; e < exitStart[id + 1]; e++) {
+                pos = exitTable + e * EXIT_SIZE;
+                Direction direction = Direction.get(data.getInt(pos + 8));
+                key = data.getInt(pos + 16);
+                Exit exit;
+                if (key >= 0) {
+                    exit = new LazyExit(data.getInt(pos + 4), cache, ExitState.LOCKED, keys[key]);
+                } else {
+                    exit = new LazyExit(data.getInt(pos + 4), cache, STATES[data.getInt(pos + 12)], null);
+                }
+                exit.setId(e);
+                room.setExit(direction, exit);
+            }
+            return room;
+        }
+    }
+
+    /**
+     * An exit of a lazily loaded world. It holds the id of the room it
+     * leads to, and gets the room from the cache when it is asked for.
+     */
+    private static class LazyExit extends Exit {
+        private int target;
+        private RoomCache cache;
+
+        LazyExit(int target, RoomCache cache, ExitState state, Key key) {
+            super(null, state, key);
+            this.target = target;
+            this.cache = cache;
+        }
+
+        public Room getTarget() {
+            return cache.get(target);
+        }
+
+        public int getTargetId() {
+            return target;
+        }
+    }
+
+    /**
+     * Decode a UTF-8 string from the mapped file.
+     */
+    private static String string(ByteBuffer data, int offset, int length) {
+        byte[] bytes = new byte[length];
+        data.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Write a world in the binary form.
+     * @param world The world to write.
+     * @param file  The file to write it to.
+     */
+    public static void writeBinary(World world, Path file) throws IOException {
+        List<Room> rooms = world.getRooms();
+        IdentityHashMap<Room, Integer> roomIndex = new IdentityHashMap<Room, Integer>();
+        for (Room room : rooms) {
+            roomIndex.put(room, roomIndex.size());
+        }
+
+        // gather the keys, wherever they are used
+        IdentityHashMap<Key, Integer> keyIndex = new IdentityHashMap<Key, Integer>();
+        ArrayList<Key> keys = new ArrayList<Key>();
+        int exitCount = 0;
+        for (Room room : rooms) {
+            addKey(room.getKey(), keyIndex, keys);
+            for (int d = 0; d < Direction.count(); d++) {
+                Direction direction = Direction.get(d);
+                if (room.getExit(direction) != null) {
+                    addKey(room.getExitKey(direction), keyIndex, keys);
+                    exitCount++;
+                }
+            }
+        }
+
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        try (OutputStream stream = Files.newOutputStream(file)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(keys.size());
+            out.writeInt(rooms.size());
+            out.writeInt(exitCount);
+            out.writeInt(roomIndex.get(world.getStartRoom()));
+
+            for (Key key : keys) {
+                writeString(out, text, key.toString());
+            }
+            for (Room room : rooms) {
+                writeString(out, text, room.getShortDescription());
+                out.writeInt(index(keyIndex, room.getKey()));
+            }
+            for (Room room : rooms) {
+                for (int d = 0; d < Direction.count(); d++) {
+                    Direction direction = Direction.get(d);
+                    Room target = room.getExit(direction);
+                    if (target != null) {
+                        out.writeInt(roomIndex.get(room));
+                        out.writeInt(roomIndex.get(target));
+                        out.writeInt(d);
+                        out.writeInt(room.getState(direction).ordinal());
+                        out.writeInt(index(keyIndex, room.getExitKey(direction)));
+                    }
+                }
+            }
+            text.writeTo(out);
+            out.flush();
+        }
+    }
+
+    private static void addKey(Key key, IdentityHashMap<Key, Integer> keyIndex, ArrayList<Key> keys) {
+        if (key != null && !keyIndex.containsKey(key)) {
+            keyIndex.put(key, keys.size());
+            keys.add(key);
+        }
+    }
+
+    private static int index(IdentityHashMap<Key, Integer> keyIndex, Key key) {
+        if (key == null) {
+            return -1;
+        }
+        return keyIndex.get(key);
+    }
+
+    /**
+     * Write the offset and length of a string, and add the string itself
+     * to the text section.
+     */
+    private static void writeString(DataOutputStream out, ByteArrayOutputStream text, String string)
+            throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(text.size());
+        out.writeInt(bytes.length);
+        text.write(bytes);
+    }
+}
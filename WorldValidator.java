@@ -0,0 +1,674 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * The world validator checks that a world can be played through before
+ * players get to see it. Errors are:
+ *
+ *  - rooms that can't be reached from the start room, even by a player
+ *    who picks up every key they can get to;
+ *  - keys that can't be got to, for example because they lie behind the
+ *    very door they open;
+ *  - rooms that strand the player: once there, no way leads back to the
+ *    start room, for example past a trapdoor.
+ *
+ * Warnings are exits that don't lead back the way they came, and trapdoors
+ * whose other side has no way through them.
+ *
+ * Reachability is worked out with breadth-first searches that take keys
+ * into account: a locked exit is passable once its key has been found in
+ * a room reached before. The searches, and the scans over all exits, are
+ * split over all cores with fork/join, so millions of exits are checked in
+ * well under a second.
+ *
+ * Usage: java WorldValidator [world file]...
+ *
+ * @author  Fredrik Ljungdahl
+ * @version 2026.10.18
+ */
+
+public class WorldValidator {
+    private static final int OPEN = -1;       // exit needs no key
+    private static final int IMPASSABLE = -2; // trapdoor, never taken this way
+    private static final int THRESHOLD = 2048; // rooms per fork/join task
+    private static final int EXAMPLES = 5;     // examples named per problem
+
+    private List<Room> rooms;
+    private int roomCount;
+    private int startRoom;
+    private int keyCount;
+    private String[] keyLabels;
+    private int[] roomKey;       // id of the key lying in each room, -1 if none
+    private Graph forward;       // exits by the room they leave from
+    private Graph backward;      // exits by the room they lead to
+    // locked exits by key id: entries lockStart[k] to lockStart[k + 1] - 1
+    private int[] lockStart;
+    private int[] lockFrom;
+    private int[] lockTo;
+    private ForkJoinPool pool;
+
+    /**
+     * Validate the default world, or the worlds in the given files.
+     * Exits with status 1 if any of them has errors.
+     */
+    public static void main(String[] args) throws IOException {
+        boolean valid = true;
+        if (args.length == 0) {
+            valid = check("default world", new World());
+        }
+        for (String file : args) {
+            valid &= check(file, WorldLoader.load(Paths.get(file)));
+        }
+        if (!valid) {
+            System.exit(1);
+        }
+    }
+
+    private static boolean check(String name, World world) {
+        long start = System.nanoTime();
+        Report report = new WorldValidator(world).validate();
+        long millis = (System.nanoTime() - start) / 1000000;
+        System.out.println(name + ": " + world.getRooms().size() + " rooms, " + world.getExitCount()
+            + " exits, checked in " + millis + " ms");
+        System.out.print(report);
+        return report.isValid();
+    }
+
+    /**
+     * Create a validator for a world.
+     * @param world The world to check.
+     */
+    public WorldValidator(World world) {
+        this(world, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create a validator for a world, running its tasks in the given pool.
+     * @param world The world to check.
+     * @param pool  The pool to run in.
+     */
+    public WorldValidator(World world, ForkJoinPool pool) {
+        this.pool = pool;
+        rooms = world.getRooms();
+        roomCount = rooms.size();
+        startRoom = world.getStartRoom().getId();
+        keyCount = world.getKeyCount();
+        buildGraphs();
+        buildLocks();
+    }
+
+    /**
+     * Check the world.
+     * @return What is wrong with it.
+     */
+    public Report validate() {
+        boolean[] found = new boolean[keyCount];
+        AtomicLongArray reachable = search(forward, startRoom, found, true);
+        boolean[] allKeys = new boolean[keyCount];
+        Arrays.fill(allKeys, true);
+        AtomicLongArray reachableWithAllKeys = search(forward, startRoom, allKeys, false);
+        AtomicLongArray leadBack = search(backward, startRoom, found, false);
+
+        Report report = new Report();
+        List<Integer> cutOff = new ArrayList<Integer>();
+        List<Integer> lockedAway = new ArrayList<Integer>();
+        long cutOffCount = 0;
+        long lockedAwayCount = 0;
+        List<Integer> stranding = new ArrayList<Integer>();
+        long strandingCount = 0;
+        for (int room = 0; room < roomCount; room++) {
+            if (!isSet(reachable, room)) {
+                if (isSet(reachableWithAllKeys, room)) {
+                    lockedAwayCount = count(lockedAway, room, lockedAwayCount);
+                } else {
+                    cutOffCount = count(cutOff, room, cutOffCount);
+                }
+            } else if (!isSet(leadBack, room)) {
+                strandingCount = count(stranding, room, strandingCount);
+            }
+        }
+        if (cutOffCount > 0) {
+            report.error(cutOffCount + " rooms can't be reached from the start at all: "
+                + roomNames(cutOff, cutOffCount));
+        }
+        if (lockedAwayCount > 0) {
+            report.error(lockedAwayCount + " rooms are behind doors whose keys can't be got to: "
+                + roomNames(lockedAway, lockedAwayCount));
+        }
+        if (strandingCount > 0) {
+            report.error(strandingCount + " rooms strand the player, with no way back to the start: "
+                + roomNames(stranding, strandingCount));
+        }
+        checkKeys(report, found);
+
+        ExitProblems exits = pool.invoke(new ScanExits(0, roomCount));
+        if (exits.asymmetric > 0) {
+            report.warning(exits.asymmetric + " exits don't lead back the way they came: "
+                + exitNames(exits.asymmetricExamples, exits.asymmetric));
+        }
+        if (exits.uselessTrapdoors > 0) {
+            report.warning(exits.uselessTrapdoors + " trapdoors can't be taken from either side: "
+                + exitNames(exits.trapdoorExamples, exits.uselessTrapdoors));
+        }
+        return report;
+    }
+
+    /**
+     * Report the keys that can't be got to, and which of them lie behind a
+     * door they open themselves.
+     */
+    private void checkKeys(Report report, boolean[] found) {
+        int[] keyRoom = new int[keyCount];
+        Arrays.fill(keyRoom, -1);
+        for (int room = 0; room < roomCount; room++) {
+            if (roomKey[room] >= 0) {
+                keyRoom[roomKey[room]] = room;
+            }
+        }
+        List<String> missing = new ArrayList<String>();
+        List<String> ownDoor = new ArrayList<String>();
+        long missingCount = 0;
+        for (int key = 0; key < keyCount; key++) {
+            if (found[key]) {
+                continue;
+            }
+            missingCount++;
+            if (missing.size() < EXAMPLES) {
+                missing.add(keyLabels[key]);
+                // would the key be found if the player already had it?
+                if (keyRoom[key] >= 0) {
+                    boolean[] withKey = found.clone();
+                    withKey[key] = true;
+                    if (isSet(search(forward, startRoom, withKey, true), keyRoom[key])) {
+                        ownDoor.add(keyLabels[key]);
+                    }
+                }
+            }
+        }
+        if (missingCount > 0) {
+            report.error(missingCount + " keys can't be got to: " + names(missing, missingCount));
+        }
+        if (!ownDoor.isEmpty()) {
+            report.error("Keys locked away behind their own doors: " + String.join(", ", ownDoor));
+        }
+    }
+
+    /**
+     * Count a room, keeping it as an example if there aren't enough yet.
+     */
+    private static long count(List<Integer> examples, int room, long count) {
+        if (examples.size() < EXAMPLES) {
+            examples.add(room);
+        }
+        return count + 1;
+    }
+
+    private String roomNames(List<Integer> examples, long count) {
+        List<String> names = new ArrayList<String>();
+        for (int room : examples) {
+            names.add(rooms.get(room).getShortDescription());
+        }
+        return names(names, count);
+    }
+
+    private String exitNames(long[] examples, long count) {
+        List<String> names = new ArrayList<String>();
+        for (long example : examples) {
+            Room room = rooms.get((int) (example >>> 8));
+            Direction direction = Direction.get((int) (example & 0xff));
+            names.add(direction + " from " + room.getShortDescription());
+        }
+        return names(names, count);
+    }
+
+    private static String names(List<String> names, long count) {
+        String text = String.join("; ", names);
+        if (count > names.size()) {
+            text += "; ...";
+        }
+        return text;
+    }
+
+    /**
+     * Collect the exits of all rooms into flat arrays, forwards and
+     * backwards. Every room fills in its own part of the forward arrays,
+     * so the rooms are done in parallel.
+     */
+    private void buildGraphs() {
+        final int[] start = new int[roomCount + 1];
+        roomKey = new int[roomCount];
+        keyLabels = new String[keyCount];
+        pool.invoke(new ForRooms(0, roomCount, new RoomTask() {
+            public void room(int r) {
+                Room room = rooms.get(r);
+                for (int d = 0; d < Direction.count(); d++) {
+                    if (room.getNeighborId(Direction.get(d)) >= 0) {
+                        start[r + 1]++;
+                    }
+                }
+                roomKey[r] = room.hasKey() ? room.getKey().getId() : -1;
+            }
+        }));
+        for (int r = 0; r < roomCount; r++) {
+            start[r + 1] += start[r];
+            if (roomKey[r] >= 0) {
+                keyLabels[roomKey[r]] = rooms.get(r).getKey().toString();
+            }
+        }
+        int exitCount = start[roomCount];
+        forward = new Graph(start, new int[exitCount], new int[exitCount], new byte[exitCount]);
+        final AtomicIntegerArray inCount = new AtomicIntegerArray(roomCount + 1);
+        pool.invoke(new ForRooms(0, roomCount, new RoomTask() {
+            public void room(int r) {
+                Room room = rooms.get(r);
+                int e = forward.start[r];
+                for (int d = 0; d < Direction.count(); d++) {
+                    Direction direction = Direction.get(d);
+                    int target = room.getNeighborId(direction);
+                    if (target < 0) {
+                        continue;
+                    }
+                    forward.to[e] = target;
+                    forward.direction[e] = (byte) d;
+                    switch (room.getState(direction)) {
+                        case LOCKED:
+                            Key key = room.getExitKey(direction);
+                            forward.key[e] = key.getId();
+                            keyLabels[key.getId()] = key.toString();
+                            break;
+                        case TRAPDOOR:
+                            forward.key[e] = IMPASSABLE;
+                            break;
+                        default:
+                            forward.key[e] = OPEN;
+                            break;
+                    }
+                    inCount.incrementAndGet(target + 1);
+                    e++;
+                }
+            }
+        }));
+
+        final int[] inStart = new int[roomCount + 1];
+        for (int r = 0; r < roomCount; r++) {
+            inStart[r + 1] = inStart[r] + inCount.get(r + 1);
+        }
+        backward = new Graph(inStart, new int[exitCount], new int[exitCount], new byte[exitCount]);
+        final AtomicIntegerArray fill = new AtomicIntegerArray(inStart);
+        pool.invoke(new ForRooms(0, roomCount, new RoomTask() {
+            public void room(int r) {
+                for (int e = forward.start[r]; e < forward.start[r + 1]; e++) {
+                    int slot = fill.getAndIncrement(forward.to[e]);
+                    backward.to[slot] = r;
+                    backward.key[slot] = forward.key[e];
+                    backward.direction[slot] = forward.direction[e];
+                }
+            }
+        }));
+    }
+
+    /**
+     * Collect the locked exits by the key that opens them.
+     */
+    private void buildLocks() {
+        lockStart = new int[keyCount + 1];
+        for (int key : forward.key) {
+            if (key >= 0) {
+                lockStart[key + 1]++;
+            }
+        }
+        for (int k = 0; k < keyCount; k++) {
+            lockStart[k + 1] += lockStart[k];
+        }
+        lockFrom = new int[lockStart[keyCount]];
+        lockTo = new int[lockStart[keyCount]];
+        int[] fill = Arrays.copyOf(lockStart, keyCount);
+        for (int r = 0; r < roomCount; r++) {
+            for (int e = forward.start[r]; e < forward.start[r + 1]; e++) {
+                int key = forward.key[e];
+                if (key >= 0) {
+                    lockFrom[fill[key]] = r;
+                    lockTo[fill[key]++] = forward.to[e];
+                }
+            }
+        }
+    }
+
+    /**
+     * Breadth-first search, one level at a time; every level is expanded
+     * in parallel.
+     * @param graph       The exits to follow.
+     * @param source      The room to start from.
+     * @param keys        The keys held, by id. With collectKeys the keys
+     *                    found on the way are added.
+     * @param collectKeys Whether keys lying in the rooms reached are picked up.
+     * @return The rooms reached, one bit per room.
+     */
+    private AtomicLongArray search(Graph graph, int source, boolean[] keys, boolean collectKeys) {
+        AtomicLongArray reached = new AtomicLongArray((roomCount + 63) >>> 6);
+        int[] frontier = new int[roomCount];
+        int[] next = new int[roomCount];
+        mark(reached, source);
+        frontier[0] = source;
+        int size = 1;
+        while (size > 0) {
+            if (collectKeys) {
+                size = pickUpKeys(frontier, size, reached, keys);
+            }
+            AtomicInteger nextSize = new AtomicInteger();
+            pool.invoke(new Expand(graph, frontier, 0, size, reached, keys, next, nextSize));
+            int[] swap = frontier;
+            frontier = next;
+            next = swap;
+            size = nextSize.get();
+        }
+        return reached;
+    }
+
+    /**
+     * Pick up the keys lying in the rooms of a level. The doors a new key
+     * opens from rooms reached earlier lead to more rooms of this level.
+     * @return The new size of the level.
+     */
+    private int pickUpKeys(int[] level, int size, AtomicLongArray reached, boolean[] keys) {
+        for (int i = 0; i < size; i++) {
+            int key = roomKey[level[i]];
+            if (key < 0 || keys[key]) {
+                continue;
+            }
+            keys[key] = true;
+            for (int l = lockStart[key]; l < lockStart[key + 1]; l++) {
+                if (isSet(reached, lockFrom[l]) && mark(reached, lockTo[l])) {
+                    level[size++] = lockTo[l];
+                }
+            }
+        }
+        return size;
+    }
+
+    private static boolean isSet(AtomicLongArray bits, int index) {
+        return (bits.get(index >>> 6) & (1L << index)) != 0;
+    }
+
+    /**
+     * Set a bit.
+     * @return true if it wasn't set before.
+     */
+    private static boolean mark(AtomicLongArray bits, int index) {
+        int word = index >>> 6;
+        long bit = 1L << index;
+        while (true) {
+            long old = bits.get(word);
+            if ((old & bit) != 0) {
+                return false;
+            }
+            if (bits.compareAndSet(word, old, old | bit)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * What the validator needs to know of a world's exits, in flat arrays.
+     * The exits of room r are entries start[r] to start[r + 1] - 1.
+     */
+    private static class Graph {
+        private int[] start;
+        private int[] to;          // the room at the other end
+        private int[] key;         // the key id it needs, OPEN or IMPASSABLE
+        private byte[] direction;  // the direction it leaves in, from its room
+
+        Graph(int[] start, int[] to, int[] key, byte[] direction) {
+            this.start = start;
+            this.to = to;
+            this.key = key;
+            this.direction = direction;
+        }
+    }
+
+    /**
+     * Something to do for every room.
+     */
+    private interface RoomTask {
+        void room(int room);
+    }
+
+    /**
+     * Do a RoomTask for every room in a range, split over the pool.
+     */
+    @SuppressWarnings("serial") // never serialized, only forked
+    private static class ForRooms extends RecursiveAction {
+        private int from;
+        private int to;
+        private RoomTask task;
+
+        ForRooms(int from, int to, RoomTask task) {
+            this.from = from;
+            this.to = to;
+            this.task = task;
+        }
+
+        protected void compute() {
+            if (to - from > THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ForRooms(from, middle, task), new ForRooms(middle, to, task));
+                return;
+            }
+            for (int r = from; r < to; r++) {
+                task.room(r);
+            }
+        }
+    }
+
+    /**
+     * Expand part of a search level: follow the passable exits of its
+     * rooms to the rooms not reached yet, which make up the next level.
+     */
+    @SuppressWarnings("serial") // never serialized, only forked
+    private static class Expand extends RecursiveAction {
+        private Graph graph;
+        private int[] level;
+        private int from;
+        private int to;
+        private AtomicLongArray reached;
+        private boolean[] keys;
+        private int[] next;
+        private AtomicInteger nextSize;
+
+        Expand(Graph graph, int[] level, int from, int to, AtomicLongArray reached,
+               boolean[] keys, int[] next, AtomicInteger nextSize) {
+            this.graph = graph;
+            this.level = level;
+            this.from = from;
+            this.to = to;
+            this.reached = reached;
+            this.keys = keys;
+            this.next = next;
+            this.nextSize = nextSize;
+        }
+
+        protected void compute() {
+            if (to - from > THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Expand(graph, level, from, middle, reached, keys, next, nextSize),
+                          new Expand(graph, level, middle, to, reached, keys, next, nextSize));
+                return;
+            }
+            int[] found = new int[64];
+            int count = 0;
+            for (int i = from; i < to; i++) {
+                int room = level[i];
+                for (int e = graph.start[room]; e < graph.start[room + 1]; e++) {
+                    int key = graph.key[e];
+                    if (key == IMPASSABLE || (key >= 0 && !keys[key])) {
+                        continue;
+                    }
+                    if (mark(reached, graph.to[e])) {
+                        if (count == found.length) {
+                            found = Arrays.copyOf(found, count * 2);
+                        }
+                        found[count++] = graph.to[e];
+                    }
+                }
+            }
+            int position = nextSize.getAndAdd(count);
+            System.arraycopy(found, 0, next, position, count);
+        }
+    }
+
+    /**
+     * Look at every exit of a range of rooms for exits that don't lead
+     * back and trapdoors that can't be taken.
+     */
+    @SuppressWarnings("serial") // never serialized, only forked
+    private class ScanExits extends RecursiveTask<ExitProblems> {
+        private int from;
+        private int to;
+
+        ScanExits(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        protected ExitProblems compute() {
+            if (to - from > THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                ScanExits right = new ScanExits(middle, to);
+                right.fork();
+                ExitProblems left = new ScanExits(from, middle).compute();
+                return left.add(right.join());
+            }
+            ExitProblems problems = new ExitProblems();
+            for (int r = from; r < to; r++) {
+                for (int e = forward.start[r]; e < forward.start[r + 1]; e++) {
+                    int target = forward.to[e];
+                    long example = ((long) r << 8) | forward.direction[e];
+                    if (forward.key[e] == IMPASSABLE) {
+                        if (!leadsTo(target, r)) {
+                            problems.uselessTrapdoors++;
+                            problems.trapdoorExamples = example(problems.trapdoorExamples, example);
+                        }
+                        continue;
+                    }
+                    Direction back = Direction.get(forward.direction[e]).opposite();
+                    if (rooms.get(target).getNeighborId(back) != r) {
+                        problems.asymmetric++;
+                        problems.asymmetricExamples = example(problems.asymmetricExamples, example);
+                    }
+                }
+            }
+            return problems;
+        }
+
+        /**
+         * @return true if the player can go from one room straight to another.
+         */
+        private boolean leadsTo(int from, int to) {
+            for (int e = forward.start[from]; e < forward.start[from + 1]; e++) {
+                if (forward.to[e] == to && forward.key[e] != IMPASSABLE) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static long[] example(long[] examples, long example) {
+        if (examples.length >= EXAMPLES) {
+            return examples;
+        }
+        long[] more = Arrays.copyOf(examples, examples.length + 1);
+        more[examples.length] = example;
+        return more;
+    }
+
+    /**
+     * The problems found with the exits of a range of rooms, with the
+     * first few of each kind as examples.
+     */
+    private static class ExitProblems {
+        private long asymmetric;
+        private long[] asymmetricExamples = new long[0];
+        private long uselessTrapdoors;
+        private long[] trapdoorExamples = new long[0];
+
+        /**
+         * Add the problems of the rooms right after these.
+         */
+        ExitProblems add(ExitProblems other) {
+            asymmetric += other.asymmetric;
+            uselessTrapdoors += other.uselessTrapdoors;
+            for (long example : other.asymmetricExamples) {
+                asymmetricExamples = example(asymmetricExamples, example);
+            }
+            for (long example : other.trapdoorExamples) {
+                trapdoorExamples = example(trapdoorExamples, example);
+            }
+            return this;
+        }
+    }
+
+    /**
+     * What the validator found: errors make a world unfit to play,
+     * warnings are worth a look.
+     */
+    public static class Report {
+        private List<String> errors = new ArrayList<String>();
+        private List<String> warnings = new ArrayList<String>();
+
+        void error(String message) {
+            errors.add(message);
+        }
+
+        void warning(String message) {
+            warnings.add(message);
+        }
+
+        /**
+         * @return true if there are no errors.
+         */
+        public boolean isValid() {
+            return errors.isEmpty();
+        }
+
+        /**
+         * @return The errors found.
+         */
+        public List<String> getErrors() {
+            return errors;
+        }
+
+        /**
+         * @return The warnings found.
+         */
+        public List<String> getWarnings() {
+            return warnings;
+        }
+
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            for (String error : errors) {
+                text.append("error: ").append(error).append('\n');
+            }
+            for (String warning : warnings) {
+                text.append("warning: ").append(warning).append('\n');
+            }
+            if (errors.isEmpty() && warnings.isEmpty()) {
+                text.append("ok\n");
+            }
+            return text.toString();
+        }
+    }
+}
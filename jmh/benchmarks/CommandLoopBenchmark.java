@@ -0,0 +1,72 @@
+package benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This class is part of the "World of Zuul" application.
+ * "World of Zuul" is a very simple, text based adventure game.
+ *
+ * The JMH benchmarks of the command loop. They run the operations set up
+ * by the game's Benchmark class, one forked JVM per operation, so the
+ * numbers of one don't depend on what the JIT saw of the others. Build and
+ * run them, with the allocation profiler, by
+ *
+ *   mvn -B -Pjmh package
+ *   java -jar target/benchmarks.jar -prof gc
+ *
+ * JMH won't generate code for benchmarks in the default package, and code
+ * in a package can't name classes in the default package, so the
+ * operations are looked up by reflection once, before measuring. Calling
+ * one is then a plain interface call.
+ *
+ * @author  Fredrik Ljungdahl
+ * @version 2026.10.18
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandLoopBenchmark {
+    @Param({"room.exitLookup", "parser.getCommand", "parser.getCommands", "commandWords.hit",
+        "commandWords.miss", "commandWords.freshHit", "commandWords.freshMiss", "hashMap.freshHit",
+        "hashMap.freshMiss", "commandWords.charsHit", "commandWords.charsMiss",
+        "commandWords.abbreviation", "room.getLongDescription", "game.processCommand",
+        "game.processCommandMetrics", "world.findRooms", "pathfinder.nextStep",
+        "pathfinder.route", "waypoints.get", "roomIndex.getPlayersNear", "game.goRoom",
+        "game.goRoomEvents"})
+    public String operation;
+
+    private Supplier<Object> code;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() throws ReflectiveOperationException {
+        Map<String, Supplier<Object>> operations = (Map<String, Supplier<Object>>)
+            Class.forName("Benchmark").getMethod("operations").invoke(null);
+        code = operations.get(operation);
+        if (code == null) {
+            throw new IllegalArgumentException("No such operation: " + operation);
+        }
+    }
+
+    @Benchmark
+    public Object run() {
+        return code.get();
+    }
+}